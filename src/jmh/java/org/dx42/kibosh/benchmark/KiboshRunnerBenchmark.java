@@ -0,0 +1,117 @@
+package org.dx42.kibosh.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.dx42.kibosh.benchmark.SyntheticSourceTree.FileMix;
+import org.dx42.kibosh.rule.Rule;
+import org.dx42.kibosh.rule.TextRule;
+import org.dx42.kibosh.rule.Violation;
+import org.dx42.kibosh.runner.KiboshRunner;
+import org.dx42.kibosh.runner.KiboshViolationsException;
+import org.dx42.kibosh.runner.ViolationSink;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks full KiboshRunner runs over a generated tree of synthetic source files. The rules do not match the
+ * generated contents, so that the runs measure the scanning rather than the formatting and logging of violations;
+ * any violations are counted by a ViolationSink.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class KiboshRunnerBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int fileCount;
+
+    @Param({"SMALL", "HUGE"})
+    private FileMix fileMix;
+
+    @Param({"1", "4"})
+    private int parallelism;
+
+    private Path root;
+    private KiboshRunner runner;
+    private List<Rule> rules;
+    private CountingViolationSink violationCount;
+
+    @Setup
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("kibosh-benchmark");
+        SyntheticSourceTree.generate(root, fileCount, fileMix);
+        violationCount = new CountingViolationSink();
+        runner = KiboshRunner.builder()
+                .baseDirectory(root.toString())
+                .parallelism(parallelism)
+                .violationSink(violationCount)
+                .build();
+        rules = Arrays.asList(
+                TextRule.builder()
+                        .name("NoFixme")
+                        .description("Resolve FIXME comments")
+                        .illegalString("FIXME")
+                        .build(),
+                TextRule.builder()
+                        .name("NoSystemExit")
+                        .description("Do not use System.exit")
+                        .illegalRegularExpression("System\\.exit\\(")
+                        .build(),
+                TextRule.builder()
+                        .name("PackageDeclaration")
+                        .description("Include a package declaration")
+                        .requiredRegularExpression("package [\\w.]+;")
+                        .excludeFilename("package-info.java")
+                        .build());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        SyntheticSourceTree.delete(root);
+    }
+
+    @Benchmark
+    public void applyRules(Blackhole blackhole) {
+        try {
+            runner.applyRules(rules);
+        } catch (KiboshViolationsException e) {
+            blackhole.consume(e);
+        }
+        blackhole.consume(violationCount.count);
+    }
+
+    private static class CountingViolationSink implements ViolationSink {
+
+        private int count;
+
+        @Override
+        public void start() {
+            count = 0;
+        }
+
+        @Override
+        public void add(Violation violation) {
+            count++;
+        }
+    }
+
+}
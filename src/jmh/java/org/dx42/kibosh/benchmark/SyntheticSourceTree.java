@@ -0,0 +1,83 @@
+package org.dx42.kibosh.benchmark;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+
+/**
+ * Generates a directory tree of synthetic Java-like source files for the benchmarks. The contents are
+ * generated from a fixed seed, so that the same parameters always produce the same tree.
+ */
+public class SyntheticSourceTree {
+
+    static final int SMALL_FILE_SIZE = 3 * 1024;
+    static final int HUGE_FILE_SIZE = 2 * 1024 * 1024;
+
+    private static final int FILES_PER_DIRECTORY = 100;
+    private static final int FILES_PER_HUGE_FILE = 1000;
+    private static final String[] LINES = {
+            "    private final String name;",
+            "    public int calculate(int value) {",
+            "        return value * 2 + offset;",
+            "    }",
+            "",
+            "    // TODO Refactor this",
+            "        System.out.println(\"value=\" + value);",
+            "        if (value > 10) {",
+            "            throw new IllegalArgumentException(\"value\");   ",
+            "        }",
+            "    @Deprecated",
+            "\tList<String> names = new ArrayList<>();",
+    };
+
+    public enum FileMix {
+        /** All files are small (about 3 KB) */
+        SMALL,
+        /** Mostly small files, plus one huge (about 2 MB) file for every 1000 files */
+        HUGE
+    }
+
+    private SyntheticSourceTree() {
+    }
+
+    static void generate(Path root, int fileCount, FileMix fileMix) throws IOException {
+        Random random = new Random(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            Path directory = root.resolve("pkg" + (i / FILES_PER_DIRECTORY));
+            Files.createDirectories(directory);
+            boolean huge = fileMix == FileMix.HUGE && i % FILES_PER_HUGE_FILE == 0;
+            String contents = generateContents(random, "Class" + i, huge ? HUGE_FILE_SIZE : SMALL_FILE_SIZE);
+            Files.write(directory.resolve("Class" + i + ".java"), contents.getBytes());
+        }
+    }
+
+    static String generateContents(Random random, String className, int size) {
+        StringBuilder builder = new StringBuilder(size + 100);
+        builder.append("package org.example;\n\npublic class ").append(className).append(" {\n");
+        while (builder.length() < size) {
+            builder.append(LINES[random.nextInt(LINES.length)]).append('\n');
+        }
+        return builder.append("}\n").toString();
+    }
+
+    static void delete(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+}
@@ -0,0 +1,132 @@
+package org.dx42.kibosh.benchmark;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.dx42.kibosh.rule.LineIndex;
+import org.dx42.kibosh.rule.LiteralMatcher;
+import org.dx42.kibosh.rule.RegexMatcher;
+import org.dx42.kibosh.rule.Rule;
+import org.dx42.kibosh.rule.SourceFile;
+import org.dx42.kibosh.rule.TextRule;
+import org.dx42.kibosh.rule.Violation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for the per-file hot paths of TextRule: literal and regular expression matching,
+ * line number resolution and exclude matching.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextRuleBenchmark {
+
+    private static final Path PATH = Paths.get("src", "main", "java", "org", "example", "Example.java");
+
+    @Param({"3072", "2097152"})
+    private int fileSize;
+
+    private String text;
+    private int[] offsets;
+    private List<Path> paths;
+    private TextRule literalRule;
+    private TextRule regexRule;
+    private TextRule excludeRule;
+    private LiteralMatcher literalMatcher;
+    private RegexMatcher regexMatcher;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(fileSize);
+        text = SyntheticSourceTree.generateContents(random, "Example", fileSize);
+        offsets = new int[1000];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = random.nextInt(text.length());
+        }
+
+        paths = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            paths.add(Paths.get("src", "main", "java", "pkg" + (i % 10), i % 7 == 0 ? "generated" : "impl", "Class" + i + ".java"));
+        }
+
+        literalRule = TextRule.builder()
+                .name("Literals")
+                .illegalString("\t")
+                .illegalString("System.out")
+                .illegalString("TODO")
+                .illegalString("printStackTrace")
+                .illegalString("\r")
+                .build();
+        regexRule = TextRule.builder()
+                .name("Regexes")
+                .illegalRegularExpression("System\\.out\\.print")
+                .illegalRegularExpression("@Deprecated\\s*\\(")
+                .illegalRegularExpression("[ \\t]+\\n")
+                .illegalRegularExpression("\\n\\s*\\n\\s*\\n")
+                .build();
+        excludeRule = TextRule.builder()
+                .name("Excludes")
+                .excludeFilename("*Test.java")
+                .excludeFilename("package-info.java")
+                .excludeFilename("**/generated/**")
+                .build();
+        literalMatcher = LiteralMatcher.forRules(Arrays.<Rule>asList(literalRule));
+        regexMatcher = RegexMatcher.forRules(Arrays.<Rule>asList(regexRule));
+    }
+
+    @Benchmark
+    public List<Violation> literalMatching() {
+        return literalRule.applyToSourceFile(SourceFile.ofText(PATH, text));
+    }
+
+    @Benchmark
+    public int literalMatcherSinglePass() {
+        return literalMatcher.findAll(text).size();
+    }
+
+    @Benchmark
+    public List<Violation> regexMatching() {
+        return regexRule.applyToSourceFile(SourceFile.ofText(PATH, text));
+    }
+
+    @Benchmark
+    public int regexMatcherSinglePass() {
+        return regexMatcher.findAll(text).size();
+    }
+
+    @Benchmark
+    public void lineNumberResolution(Blackhole blackhole) {
+        LineIndex lineIndex = new LineIndex(text);
+        for (int offset: offsets) {
+            blackhole.consume(lineIndex.getLineNumber(offset));
+            blackhole.consume(lineIndex.getColumnNumber(offset));
+        }
+    }
+
+    @Benchmark
+    public void excludeMatching(Blackhole blackhole) {
+        for (Path path: paths) {
+            blackhole.consume(excludeRule.appliesTo(path));
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+package org.dx42.kibosh.rule;
+
+import static java.nio.charset.StandardCharsets.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A view of the raw (undecoded) bytes of a file as a CharSequence, one char per byte, for searching
+ * for ASCII literals without decoding the file. This is only valid for charsets in which ASCII characters
+ * are always encoded as the same single bytes, and those bytes never occur within the encoding of other
+ * characters; i.e. UTF-8, US-ASCII and ISO-8859-1. All offsets are byte offsets.
+ */
+public class AsciiBytes implements CharSequence {
+
+    private final ByteBuffer buffer;
+    private final byte[] array;
+    private final int offset;
+    private final int length;
+    private final boolean utf8;
+    private final int firstLineNumber;
+    private final LiteralMatcher literalMatcher;
+
+    private LineIndex lineIndex;
+    private Map<String, int[]> literalOffsets;
+
+    AsciiBytes(ByteBuffer buffer, Charset charset, int firstLineNumber, LiteralMatcher literalMatcher) {
+        this.buffer = buffer;
+        this.array = buffer.hasArray() ? buffer.array() : null;
+        this.offset = buffer.hasArray() ? buffer.arrayOffset() + buffer.position() : buffer.position();
+        this.length = buffer.remaining();
+        this.utf8 = UTF_8.equals(charset);
+        this.firstLineNumber = firstLineNumber;
+        this.literalMatcher = literalMatcher;
+    }
+
+    /**
+     * @return true if ASCII literals can be found within the raw bytes of text encoded using the charset
+     */
+    public static boolean isSupported(Charset charset) {
+        return UTF_8.equals(charset) || US_ASCII.equals(charset) || ISO_8859_1.equals(charset);
+    }
+
+    /**
+     * @return true if all of the strings contain only ASCII characters
+     */
+    public static boolean isAscii(Collection<String> strings) {
+        for (String string: strings) {
+            for (int i = 0; i < string.length(); i++) {
+                if (string.charAt(i) >= 0x80) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Find the (non-overlapping) byte offsets of the ASCII literal. As with SourceFile.findLiteral(), if the
+     * literal is one of those of the LiteralMatcher, then the occurrences of all of its literals are found in
+     * a single pass (once).
+     */
+    public int[] findLiteral(String literal) {
+        if (literalMatcher == null || !literalMatcher.contains(literal)) {
+            return LiteralMatcher.findAll(this, literal);
+        }
+        if (literalOffsets == null) {
+            literalOffsets = literalMatcher.findAll(this);
+        }
+        int[] offsets = literalOffsets.get(literal);
+        return offsets == null ? new int[0] : offsets;
+    }
+
+    public boolean contains(String literal) {
+        return literal.isEmpty() || LiteralMatcher.indexOf(this, literal, 0) != -1;
+    }
+
+    /**
+     * @return the (1-based) line number containing the byte at the specified offset
+     */
+    public int getLineNumber(int offset) {
+        return getLineIndex().getLineNumber(offset);
+    }
+
+    /**
+     * @return the (1-based) column number of the byte at the specified offset, counted in (UTF-16) chars, as for
+     *      the decoded text
+     */
+    public int getColumnNumber(int offset) {
+        int lineStart = getLineIndex().getLineStartOffset(getLineNumber(offset));
+        if (!utf8) {
+            return offset - lineStart + 1;
+        }
+        int column = 1;
+        for (int i = lineStart; i < offset; i++) {
+            int b = byteAt(i);
+            if ((b & 0xC0) != 0x80) {
+                // Not a continuation byte; a four-byte sequence is a surrogate pair in UTF-16
+                column += (b & 0xF8) == 0xF0 ? 2 : 1;
+            }
+        }
+        return column;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) byteAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+        if (array != null) {
+            return new String(array, offset, length, ISO_8859_1);
+        }
+        return ISO_8859_1.decode(buffer.duplicate()).toString();
+    }
+
+    private int byteAt(int index) {
+        return (array != null ? array[offset + index] : buffer.get(offset + index)) & 0xFF;
+    }
+
+    private LineIndex getLineIndex() {
+        if (lineIndex == null) {
+            lineIndex = new LineIndex(this, firstLineNumber);
+        }
+        return lineIndex;
+    }
+
+}
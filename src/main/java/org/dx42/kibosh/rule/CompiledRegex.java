@@ -0,0 +1,267 @@
+package org.dx42.kibosh.rule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import lombok.Getter;
+
+/**
+ * A compiled regular expression, along with the literal fragments that must appear in any text
+ * that it matches; e.g. "System.out.print" for /System\.out\.print/. Checking for those literals
+ * first is much faster than running the regular expression, and enables skipping it entirely for
+ * most files. If no literals can be extracted from the regular expression, then it is always run.
+ */
+public class CompiledRegex {
+
+    private static final String SIMPLE_ESCAPES = "dDsSwWbBAGzZhHvVRX";
+
+    @Getter
+    private final String regex;
+
+    @Getter
+    private final Pattern pattern;
+
+    /** The literal fragments that must all be present for the regular expression to match. */
+    @Getter
+    private final List<String> requiredLiterals;
+
+    private CompiledRegex(String regex) {
+        this.regex = regex;
+        this.pattern = Pattern.compile(regex);
+        this.requiredLiterals = Collections.unmodifiableList(extractRequiredLiterals(regex));
+    }
+
+    public static CompiledRegex compile(String regex) {
+        return new CompiledRegex(regex);
+    }
+
+    /**
+     * @return false if the text cannot possibly match the regular expression, because it does not
+     *      contain all of the required literals; otherwise true
+     */
+    public boolean mightMatch(String text) {
+        for (String literal: requiredLiterals) {
+            if (!text.contains(literal)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Extract the literal fragments from the top-level sequence of the regular expression. This is
+     * deliberately conservative: anything that is optional, repeated zero or more times, within a group
+     * or character class, or part of a top-level alternation is not included; and parsing stops at any
+     * construct that is not understood (e.g. embedded flags).
+     */
+    static List<String> extractRequiredLiterals(String regex) {
+        Set<String> literals = new LinkedHashSet<>();
+        if (hasTopLevelAlternation(regex)) {
+            return new ArrayList<>();
+        }
+
+        StringBuilder current = new StringBuilder();
+        boolean lastWasLiteral = false;
+        int i = 0;
+        parse:
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            switch (c) {
+                case '\\':
+                    if (i + 1 >= regex.length()) {
+                        break parse;
+                    }
+                    char next = regex.charAt(i + 1);
+                    char literal = escapedLiteral(next);
+                    i += 2;
+                    if (literal != 0) {
+                        current.append(literal);
+                        lastWasLiteral = true;
+                    } else if (SIMPLE_ESCAPES.indexOf(next) >= 0) {
+                        flush(current, literals);
+                        lastWasLiteral = false;
+                    } else {
+                        break parse;
+                    }
+                    continue;
+                case '[':
+                    i = skipCharacterClass(regex, i);
+                    if (i < 0) {
+                        break parse;
+                    }
+                    flush(current, literals);
+                    lastWasLiteral = false;
+                    continue;
+                case '(':
+                    if (isEmbeddedFlags(regex, i)) {
+                        break parse;
+                    }
+                    i = skipGroup(regex, i);
+                    if (i < 0) {
+                        break parse;
+                    }
+                    flush(current, literals);
+                    lastWasLiteral = false;
+                    continue;
+                case '*':
+                case '?':
+                case '{':
+                    // The preceding character is optional (or its repetition count is not known)
+                    if (lastWasLiteral) {
+                        current.setLength(current.length() - 1);
+                    }
+                    flush(current, literals);
+                    lastWasLiteral = false;
+                    if (c == '{') {
+                        i = regex.indexOf('}', i);
+                        if (i < 0) {
+                            break parse;
+                        }
+                    }
+                    i++;
+                    continue;
+                case '+':
+                    // The preceding character is required, but may be repeated
+                    flush(current, literals);
+                    lastWasLiteral = false;
+                    i++;
+                    continue;
+                case '.':
+                case '^':
+                case '$':
+                    flush(current, literals);
+                    lastWasLiteral = false;
+                    i++;
+                    continue;
+                case ')':
+                case '|':
+                    break parse;
+                default:
+                    current.append(c);
+                    lastWasLiteral = true;
+                    i++;
+            }
+        }
+        flush(current, literals);
+        return new ArrayList<>(literals);
+    }
+
+    private static void flush(StringBuilder current, Set<String> literals) {
+        if (current.length() > 0) {
+            literals.add(current.toString());
+            current.setLength(0);
+        }
+    }
+
+    /**
+     * @return the literal character for the escape sequence, or 0 if it is not a single literal character
+     */
+    private static char escapedLiteral(char c) {
+        switch (c) {
+            case 't': return '\t';
+            case 'n': return '\n';
+            case 'r': return '\r';
+            case 'f': return '\f';
+            case 'a': return '\u0007';
+            case 'e': return '\u001B';
+            default: return Character.isLetterOrDigit(c) ? 0 : c;
+        }
+    }
+
+    private static boolean hasTopLevelAlternation(String regex) {
+        int depth = 0;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                i = skipCharacterClass(regex, i) - 1;
+                if (i < 0) {
+                    return true;
+                }
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the group at the index is an embedded flag expression such as "(?i)", which
+     *      may change how the remainder of the regular expression matches
+     */
+    private static boolean isEmbeddedFlags(String regex, int index) {
+        if (!regex.startsWith("(?", index)) {
+            return false;
+        }
+        int i = index + 2;
+        while (i < regex.length() && (Character.isLetter(regex.charAt(i)) || regex.charAt(i) == '-')) {
+            i++;
+        }
+        return i > index + 2 && i < regex.length() && regex.charAt(i) == ')';
+    }
+
+    /**
+     * @return the index following the character class starting at the index, or -1 if not understood
+     */
+    private static int skipCharacterClass(String regex, int index) {
+        int i = index + 1;
+        if (i < regex.length() && regex.charAt(i) == '^') {
+            i++;
+        }
+        if (i < regex.length() && regex.charAt(i) == ']') {
+            i++;
+        }
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == '[') {
+                return -1;
+            } else if (c == ']') {
+                return i + 1;
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index following the group starting at the index, or -1 if not understood
+     */
+    private static int skipGroup(String regex, int index) {
+        int depth = 0;
+        int i = index;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                i = skipCharacterClass(regex, i);
+                if (i < 0) {
+                    return -1;
+                }
+                continue;
+            }
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i + 1;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+}
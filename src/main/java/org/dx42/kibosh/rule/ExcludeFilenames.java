@@ -0,0 +1,40 @@
+package org.dx42.kibosh.rule;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Matches the exclude filename patterns of a rule. A pattern that contains a '/' is matched against
+ * the whole file path, otherwise against the file name.
+ */
+class ExcludeFilenames {
+
+    private ExcludeFilenames() {
+    }
+
+    static List<PathMatcher> compile(List<String> excludeFilenames) {
+        List<PathMatcher> matchers = new ArrayList<>();
+        for (String excludeFilename: excludeFilenames) {
+            PathMatcher globMatcher = FileSystems.getDefault().getPathMatcher("glob:" + excludeFilename);
+            if (excludeFilename.contains("/")) {
+                matchers.add(globMatcher);
+            } else {
+                matchers.add(path -> path.getFileName() != null && globMatcher.matches(path.getFileName()));
+            }
+        }
+        return matchers;
+    }
+
+    static boolean matches(List<PathMatcher> matchers, Path path) {
+        for (PathMatcher matcher: matchers) {
+            if (matcher.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
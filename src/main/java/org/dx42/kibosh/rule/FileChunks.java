@@ -0,0 +1,46 @@
+package org.dx42.kibosh.rule;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+
+/**
+ * The state shared by the chunks of a file that is read in chunks (see {@link SourceFileLoader#readChunks}), so
+ * that file-level checks, such as for required strings, can combine the results for all of the chunks, even if
+ * the chunks are checked in parallel and in any order.
+ */
+class FileChunks {
+
+    /** The number of chunks in the file; -1 until the last chunk has been read. */
+    private int chunkCount = -1;
+
+    private final Map<Object, Progress> progressByKey = new HashMap<>();
+
+    synchronized void setChunkCount(int chunkCount) {
+        this.chunkCount = chunkCount;
+    }
+
+    /**
+     * Record the result of checking one chunk for the key (e.g. a rule), combined with the results for the
+     * chunks already checked for that key.
+     * @return the combined result for all of the chunks, if this was the last chunk to be checked for the key;
+     *      otherwise null
+     */
+    @SuppressWarnings("unchecked")
+    synchronized <T> T chunkChecked(Object key, T result, BinaryOperator<T> combiner) {
+        Progress progress = progressByKey.computeIfAbsent(key, k -> new Progress());
+        progress.result = progress.checkedCount == 0 ? result : combiner.apply((T) progress.result, result);
+        progress.checkedCount++;
+        if (progress.checkedCount != chunkCount) {
+            return null;
+        }
+        progressByKey.remove(key);
+        return (T) progress.result;
+    }
+
+    private static class Progress {
+        private int checkedCount;
+        private Object result;
+    }
+
+}
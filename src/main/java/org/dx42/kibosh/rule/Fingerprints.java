@@ -0,0 +1,39 @@
+package org.dx42.kibosh.rule;
+
+import java.util.Collection;
+
+/**
+ * Builds the fingerprint of a rule from its configuration fields. Each field (and each element of a collection
+ * field) is prefixed with its length, so that different configurations never produce the same fingerprint,
+ * whatever characters the values contain.
+ */
+class Fingerprints {
+
+    private Fingerprints() {
+    }
+
+    static String of(Object... fields) {
+        StringBuilder builder = new StringBuilder();
+        for (Object field: fields) {
+            append(builder, field);
+        }
+        return builder.toString();
+    }
+
+    private static void append(StringBuilder builder, Object field) {
+        if (field instanceof Collection) {
+            Collection<?> collection = (Collection<?>) field;
+            builder.append('[').append(collection.size()).append(':');
+            for (Object element: collection) {
+                append(builder, element);
+            }
+            builder.append(']');
+        } else if (field == null) {
+            builder.append('-');
+        } else {
+            String value = field.toString();
+            builder.append(value.length()).append(':').append(value);
+        }
+    }
+
+}
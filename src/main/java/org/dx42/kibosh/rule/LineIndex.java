@@ -0,0 +1,73 @@
+package org.dx42.kibosh.rule;
+
+import java.util.Arrays;
+
+/**
+ * Index of the starting offset of each line within some text, built once in a single pass.
+ * Resolving an offset to its line or column number is then a binary search.
+ */
+public class LineIndex {
+
+    private final int[] lineStartOffsets;
+    private final int lineCount;
+    private final int firstLineNumber;
+
+    public LineIndex(CharSequence text) {
+        this(text, 1);
+    }
+
+    /**
+     * Create a LineIndex for text whose first line has the specified line number, e.g. for a chunk
+     * from the middle of a larger file.
+     */
+    public LineIndex(CharSequence text, int firstLineNumber) {
+        int[] starts = new int[16];
+        int count = 1;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) == '\n') {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                }
+                starts[count++] = i + 1;
+            }
+        }
+        this.lineStartOffsets = starts;
+        this.lineCount = count;
+        this.firstLineNumber = firstLineNumber;
+    }
+
+    /**
+     * @return the number of lines; a trailing newline starts a final (empty) line
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return the (1-based) line number containing the character at the specified offset
+     */
+    public int getLineNumber(int offset) {
+        if (offset < 0) {
+            throw new IndexOutOfBoundsException("Index out of bounds: " + offset);
+        }
+        int index = Arrays.binarySearch(lineStartOffsets, 0, lineCount, offset);
+        int lineIndex = index >= 0 ? index : -index - 2;
+        return lineIndex + firstLineNumber;
+    }
+
+    /**
+     * @return the (1-based) column number of the character at the specified offset within its line
+     */
+    public int getColumnNumber(int offset) {
+        return offset - getLineStartOffset(getLineNumber(offset)) + 1;
+    }
+
+    /**
+     * @return the offset of the first character of the specified (1-based) line number
+     */
+    public int getLineStartOffset(int lineNumber) {
+        return lineStartOffsets[lineNumber - firstLineNumber];
+    }
+
+}
@@ -0,0 +1,166 @@
+package org.dx42.kibosh.rule;
+
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Singular;
+import org.dx42.kibosh.rule.Violation.Severity;
+
+/**
+ * A rule that checks each line of a file on its own; e.g. for the maximum line length, trailing whitespace
+ * or tabs. The lines are streamed from the file, so that memory use is bounded by the longest line, unless the
+ * file has already been read for other rules. All of the LineRules applied to a file are checked in a single
+ * pass over its lines (see {@link #applyAll}).
+ */
+@Builder
+public class LineRule implements Rule {
+
+    private static final String QUOTES = "\"";
+
+    @Getter
+    private final String name;
+    private final String description;
+
+    @Builder.Default
+    private Severity severity = Severity.ERROR;
+
+    /** If greater than zero, the maximum number of characters in each line, excluding the line terminator. */
+    private final int maxLineLength;
+
+    /** If true, lines must not end with spaces or tabs. */
+    private final boolean illegalTrailingWhitespace;
+
+    /** If true, lines must not contain tab characters. */
+    private final boolean illegalTabs;
+
+    /** Strings that must not occur within any line. */
+    @Singular
+    List<String> illegalStrings;
+
+    /**
+     * Filenames to skip applying this rule. May contain wildcards ('*' or '?'). A pattern that contains
+     * a '/' is matched against the whole file path rather than just the file name.
+     */
+    @Singular
+    List<String> excludeFilenames;
+
+    @Getter(value = AccessLevel.PRIVATE, lazy = true)
+    private final List<PathMatcher> excludeFilenameMatchers = ExcludeFilenames.compile(excludeFilenames);
+
+    /**
+     * Apply the LineRules to the SourceFile in a single pass over its lines.
+     */
+    public static List<Violation> applyAll(List<LineRule> rules, SourceFile sourceFile) {
+        List<Violation> violations = new ArrayList<>();
+        List<LineRule> applicableRules = new ArrayList<>(rules.size());
+        for (LineRule rule: rules) {
+            if (rule.appliesTo(sourceFile.getPath())) {
+                applicableRules.add(rule);
+            }
+        }
+        if (applicableRules.isEmpty()) {
+            return violations;
+        }
+        Path path = sourceFile.getPath();
+        sourceFile.forEachLine((line, lineNumber) -> {
+            for (LineRule rule: applicableRules) {
+                rule.checkLine(path, line, lineNumber, violations);
+            }
+        });
+        return violations;
+    }
+
+    @Override
+    public List<Violation> applyToFile(Path path) {
+        return applyToSourceFile(SourceFile.of(path));
+    }
+
+    @Override
+    public List<Violation> applyToSourceFile(SourceFile sourceFile) {
+        List<Violation> violations = new ArrayList<>();
+        if (!appliesTo(sourceFile.getPath())) {
+            return violations;
+        }
+        Path path = sourceFile.getPath();
+        sourceFile.forEachLine((line, lineNumber) -> checkLine(path, line, lineNumber, violations));
+        return violations;
+    }
+
+    @Override
+    public boolean appliesTo(Path path) {
+        return !ExcludeFilenames.matches(getExcludeFilenameMatchers(), path);
+    }
+
+    @Override
+    public String getFingerprint() {
+        return Fingerprints.of(name, description, severity, maxLineLength, illegalTrailingWhitespace, illegalTabs,
+                illegalStrings, excludeFilenames);
+    }
+
+    /**
+     * Compile the exclude filename patterns of this rule now, rather than on first use (see RuleSet), and check
+     * that its illegal strings are not empty.
+     * @return a description of each invalid pattern or string; empty if all are valid
+     */
+    List<String> compile() {
+        List<String> errors = new ArrayList<>();
+        if (illegalStrings.contains("")) {
+            errors.add(name + ": illegal strings must not be empty");
+        }
+        try {
+            getExcludeFilenameMatchers();
+        } catch (IllegalArgumentException e) {
+            errors.add(name + ": invalid exclude filename pattern: " + e.getMessage());
+        }
+        return errors;
+    }
+
+    private void checkLine(Path path, String line, int lineNumber, List<Violation> violations) {
+        if (maxLineLength > 0 && line.length() > maxLineLength) {
+            addViolation(violations, path, lineNumber, maxLineLength + 1,
+                    "line length of " + line.length() + " exceeds the maximum of " + maxLineLength);
+        }
+        if (illegalTrailingWhitespace) {
+            int end = line.length();
+            while (end > 0 && (line.charAt(end - 1) == ' ' || line.charAt(end - 1) == '\t')) {
+                end--;
+            }
+            if (end < line.length()) {
+                addViolation(violations, path, lineNumber, end + 1, "contains trailing whitespace");
+            }
+        }
+        if (illegalTabs) {
+            int index = line.indexOf('\t');
+            if (index >= 0) {
+                addViolation(violations, path, lineNumber, index + 1, "contains tab character");
+            }
+        }
+        for (String illegalString: illegalStrings) {
+            if (illegalString.isEmpty()) {
+                // Rejected by compile(); skip it rather than matching at every position
+                continue;
+            }
+            for (int index = line.indexOf(illegalString); index >= 0; index = line.indexOf(illegalString, index + illegalString.length())) {
+                addViolation(violations, path, lineNumber, index + 1, "contains illegal string " + QUOTES + illegalString + QUOTES);
+            }
+        }
+    }
+
+    private void addViolation(List<Violation> violations, Path path, int lineNumber, int columnNumber, String messageSuffix) {
+        String message = name + ": " + QUOTES + description + QUOTES + "; " + "File=.(" + path.getFileName() + ":" + lineNumber + ") "
+                + messageSuffix;
+        violations.add(Violation.builder()
+                .rule(this)
+                .severity(severity)
+                .message(message)
+                .lineNumber(lineNumber)
+                .columnNumber(columnNumber)
+                .build());
+    }
+
+}
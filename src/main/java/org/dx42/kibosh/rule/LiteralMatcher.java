@@ -0,0 +1,278 @@
+package org.dx42.kibosh.rule;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds all occurrences of a fixed set of literal strings within some text in a single pass,
+ * using the Aho-Corasick algorithm. A LiteralMatcher is immutable once created, and so may be
+ * shared across threads.
+ */
+public class LiteralMatcher {
+
+    private static final int ASCII_SIZE = 128;
+    private static final int[] NO_OFFSETS = new int[0];
+
+    private final String[] literals;
+    private final Map<String, Integer> literalIds = new HashMap<>();
+    private final List<Node> nodes = new ArrayList<>();
+
+    public LiteralMatcher(Collection<String> literals) {
+        Set<String> uniqueLiterals = new LinkedHashSet<>();
+        for (String literal: literals) {
+            if (!literal.isEmpty()) {
+                uniqueLiterals.add(literal);
+            }
+        }
+        this.literals = uniqueLiterals.toArray(new String[0]);
+        nodes.add(new Node());
+        for (int id = 0; id < this.literals.length; id++) {
+            literalIds.put(this.literals[id], id);
+            addToTrie(this.literals[id], id);
+        }
+        buildFailureLinks();
+    }
+
+    /**
+     * Create a LiteralMatcher for the illegal strings of all TextRules in the specified list.
+     * @return the LiteralMatcher, or null if there are no illegal strings
+     */
+    public static LiteralMatcher forRules(List<Rule> rules) {
+        List<String> literals = new ArrayList<>();
+        for (Rule rule: rules) {
+            if (rule instanceof TextRule) {
+                literals.addAll(((TextRule) rule).illegalStrings);
+            }
+        }
+        LiteralMatcher literalMatcher = new LiteralMatcher(literals);
+        return literalMatcher.literals.length == 0 ? null : literalMatcher;
+    }
+
+    public boolean contains(String literal) {
+        return literalIds.containsKey(literal);
+    }
+
+    /**
+     * Find the occurrences of all of the literals within the text. As with repeated calls to
+     * String.indexOf(), the occurrences of any single literal do not overlap each other.
+     * @return the sorted starting offsets for each literal that occurs within the text
+     */
+    public Map<String, int[]> findAll(CharSequence text) {
+        int[][] offsets = new int[literals.length][];
+        int[] counts = new int[literals.length];
+        int[] nextAllowedStart = new int[literals.length];
+
+        int state = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            state = nextState(state, text.charAt(i));
+            for (int outputState = state; outputState > 0; outputState = nodes.get(outputState).outputLink) {
+                int id = nodes.get(outputState).literalId;
+                if (id < 0) {
+                    continue;
+                }
+                int start = i - literals[id].length() + 1;
+                if (start >= nextAllowedStart[id]) {
+                    offsets[id] = append(offsets[id], counts[id]++, start);
+                    nextAllowedStart[id] = start + literals[id].length();
+                }
+            }
+        }
+
+        Map<String, int[]> result = new HashMap<>();
+        for (int id = 0; id < literals.length; id++) {
+            if (counts[id] > 0) {
+                result.put(literals[id], Arrays.copyOf(offsets[id], counts[id]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Find which of the literals do not occur within the text, in a single pass that stops as soon as
+     * all of them have been found.
+     * @return the literals that do not occur within the text
+     */
+    public List<String> findMissing(CharSequence text) {
+        boolean[] found = new boolean[literals.length];
+        int remaining = literals.length;
+        int state = 0;
+        int length = text.length();
+        for (int i = 0; i < length && remaining > 0; i++) {
+            state = nextState(state, text.charAt(i));
+            for (int outputState = state; outputState > 0; outputState = nodes.get(outputState).outputLink) {
+                int id = nodes.get(outputState).literalId;
+                if (id >= 0 && !found[id]) {
+                    found[id] = true;
+                    remaining--;
+                }
+            }
+        }
+
+        List<String> missing = new ArrayList<>(remaining);
+        for (int id = 0; id < literals.length; id++) {
+            if (!found[id]) {
+                missing.add(literals[id]);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Find the (non-overlapping) occurrences of a single literal using String.indexOf() (or the
+     * equivalent, for other CharSequences). This is the fallback for literals that are not part of
+     * a LiteralMatcher.
+     */
+    public static int[] findAll(CharSequence text, String literal) {
+        if (literal.isEmpty()) {
+            return NO_OFFSETS;
+        }
+        int[] offsets = null;
+        int count = 0;
+        int startIndex = 0;
+        while ((startIndex = indexOf(text, literal, startIndex)) != -1) {
+            offsets = append(offsets, count++, startIndex);
+            startIndex += literal.length();
+        }
+        return count == 0 ? NO_OFFSETS : Arrays.copyOf(offsets, count);
+    }
+
+    /**
+     * @return the index of the first occurrence of the literal within the text, starting at fromIndex; or -1
+     */
+    static int indexOf(CharSequence text, String literal, int fromIndex) {
+        if (text instanceof String) {
+            return ((String) text).indexOf(literal, fromIndex);
+        }
+        char first = literal.charAt(0);
+        int last = text.length() - literal.length();
+        for (int i = fromIndex; i <= last; i++) {
+            if (text.charAt(i) != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < literal.length() && text.charAt(i + j) == literal.charAt(j)) {
+                j++;
+            }
+            if (j == literal.length()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void addToTrie(String literal, int id) {
+        int state = 0;
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            int next = nodes.get(state).get(c);
+            if (next < 0) {
+                next = nodes.size();
+                nodes.add(new Node());
+                nodes.get(state).put(c, next);
+            }
+            state = next;
+        }
+        nodes.get(state).literalId = id;
+    }
+
+    private void buildFailureLinks() {
+        // Breadth-first, so that the failure link of each node is resolved before its children
+        List<Integer> queue = new ArrayList<>();
+        Node root = nodes.get(0);
+        for (Map.Entry<Character, Integer> transition: root.transitions()) {
+            queue.add(transition.getValue());
+        }
+        for (int q = 0; q < queue.size(); q++) {
+            int state = queue.get(q);
+            Node node = nodes.get(state);
+            for (Map.Entry<Character, Integer> transition: node.transitions()) {
+                char c = transition.getKey();
+                int child = transition.getValue();
+                Node childNode = nodes.get(child);
+                childNode.failureLink = nextState(node.failureLink, c);
+                Node failureNode = nodes.get(childNode.failureLink);
+                childNode.outputLink = failureNode.literalId >= 0 ? childNode.failureLink : failureNode.outputLink;
+                queue.add(child);
+            }
+        }
+    }
+
+    private int nextState(int state, char c) {
+        while (true) {
+            Node node = nodes.get(state);
+            int next = node.get(c);
+            if (next >= 0) {
+                return next;
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = node.failureLink;
+        }
+    }
+
+    static int[] append(int[] array, int count, int value) {
+        if (array == null) {
+            array = new int[8];
+        } else if (count == array.length) {
+            array = Arrays.copyOf(array, count * 2);
+        }
+        array[count] = value;
+        return array;
+    }
+
+    private static class Node {
+        private int[] asciiTransitions;
+        private Map<Character, Integer> otherTransitions;
+        private int failureLink;
+        private int outputLink;     // the nearest node along the failure links that ends a literal
+        private int literalId = -1;
+
+        private int get(char c) {
+            if (c < ASCII_SIZE) {
+                return asciiTransitions == null ? -1 : asciiTransitions[c];
+            }
+            Integer next = otherTransitions == null ? null : otherTransitions.get(c);
+            return next == null ? -1 : next;
+        }
+
+        private void put(char c, int next) {
+            if (c < ASCII_SIZE) {
+                if (asciiTransitions == null) {
+                    asciiTransitions = new int[ASCII_SIZE];
+                    Arrays.fill(asciiTransitions, -1);
+                }
+                asciiTransitions[c] = next;
+            } else {
+                if (otherTransitions == null) {
+                    otherTransitions = new HashMap<>();
+                }
+                otherTransitions.put(c, next);
+            }
+        }
+
+        private List<Map.Entry<Character, Integer>> transitions() {
+            List<Map.Entry<Character, Integer>> transitions = new ArrayList<>();
+            if (asciiTransitions != null) {
+                for (int c = 0; c < ASCII_SIZE; c++) {
+                    if (asciiTransitions[c] >= 0) {
+                        transitions.add(new SimpleEntry<>((char) c, asciiTransitions[c]));
+                    }
+                }
+            }
+            if (otherTransitions != null) {
+                transitions.addAll(otherTransitions.entrySet());
+            }
+            return transitions;
+        }
+    }
+
+}
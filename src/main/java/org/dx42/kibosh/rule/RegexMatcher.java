@@ -0,0 +1,206 @@
+package org.dx42.kibosh.rule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the matches of a set of regular expressions within some text in a single pass, rather than
+ * running a separate Matcher.find() loop for each. The regular expressions that might match the text
+ * (see {@link CompiledRegex#mightMatch}) are combined into a single Pattern, which is cached for that
+ * subset; at each position where any of them matches, a capturing lookahead for each one records
+ * whether (and where) it matches there. The results are the same as for separate find() loops.
+ *
+ * Regular expressions that cannot be combined (e.g. those with backreferences or lookaround) are
+ * not included; see {@link #isCombinable(String)}. A RegexMatcher may be shared across threads.
+ */
+public class RegexMatcher {
+
+    private final CompiledRegex[] regexes;
+    private final Map<String, Integer> regexIds = new HashMap<>();
+    private final Map<BitSet, Pattern> combinedPatterns = new ConcurrentHashMap<>();
+
+    public RegexMatcher(Collection<String> regexes) {
+        this(regexes, CompiledRegex::compile);
+    }
+
+    /**
+     * @param compiler - returns the CompiledRegex for each regular expression, e.g. one shared with the rules
+     */
+    RegexMatcher(Collection<String> regexes, Function<String, CompiledRegex> compiler) {
+        Set<String> uniqueRegexes = new LinkedHashSet<>();
+        for (String regex: regexes) {
+            if (isCombinable(regex)) {
+                uniqueRegexes.add(regex);
+            }
+        }
+        this.regexes = new CompiledRegex[uniqueRegexes.size()];
+        int id = 0;
+        for (String regex: uniqueRegexes) {
+            this.regexes[id] = compiler.apply(regex);
+            regexIds.put(regex, id++);
+        }
+    }
+
+    /**
+     * Create a RegexMatcher for the illegal regular expressions of all TextRules (without a regexTimeLimitMillis)
+     * in the specified list.
+     * @return the RegexMatcher, or null if there are no (combinable) illegal regular expressions
+     */
+    public static RegexMatcher forRules(List<Rule> rules) {
+        return forRules(rules, CompiledRegex::compile);
+    }
+
+    static RegexMatcher forRules(List<Rule> rules, Function<String, CompiledRegex> compiler) {
+        List<String> regexes = new ArrayList<>();
+        for (Rule rule: rules) {
+            // The regular expressions of a rule with a time limit must only be matched within that limit
+            if (rule instanceof TextRule && ((TextRule) rule).getRegexTimeLimitMillis() <= 0) {
+                regexes.addAll(((TextRule) rule).illegalRegularExpressions);
+            }
+        }
+        RegexMatcher regexMatcher = new RegexMatcher(regexes, compiler);
+        return regexMatcher.regexes.length == 0 ? null : regexMatcher;
+    }
+
+    public boolean contains(String regex) {
+        return regexIds.containsKey(regex);
+    }
+
+    /**
+     * @return true if the regular expression can be combined with others; i.e. it does not contain
+     *      backreferences, lookaround, named groups, \G or comments mode, whose meaning would change, or a \Q
+     *      quote without a closing \E, which would also quote the rest of the combined pattern
+     */
+    public static boolean isCombinable(String regex) {
+        for (int i = 0; i < regex.length() - 1; i++) {
+            char c = regex.charAt(i);
+            char next = regex.charAt(i + 1);
+            if (c == '\\') {
+                if ((next >= '1' && next <= '9') || next == 'k' || next == 'G') {
+                    return false;
+                }
+                if (next == 'Q') {
+                    // The quoted text is literal, so skip it
+                    int end = regex.indexOf("\\E", i + 2);
+                    if (end == -1) {
+                        return false;
+                    }
+                    i = end;
+                }
+                i++;
+            } else if (c == '(' && next == '?' && (isLookaroundOrNamedGroup(regex, i + 2) || isCommentsFlag(regex, i + 2))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLookaroundOrNamedGroup(String regex, int index) {
+        return index < regex.length() && "=!<".indexOf(regex.charAt(index)) >= 0;
+    }
+
+    private static boolean isCommentsFlag(String regex, int index) {
+        for (int i = index; i < regex.length() && (Character.isLetter(regex.charAt(i)) || regex.charAt(i) == '-'); i++) {
+            if (regex.charAt(i) == 'x') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find the matches of all of the regular expressions within the text. As with repeated calls to
+     * Matcher.find(), the matches of any single regular expression do not overlap each other.
+     * @return the sorted starting offsets of the matches for each regular expression that matches the text
+     */
+    public Map<String, int[]> findAll(String text) {
+        return findAll(text, 0);
+    }
+
+    /**
+     * Find the matches of all of the regular expressions that start at or after the start offset within the text.
+     * The text before the start is context (e.g. the end of the previous chunk of a file) for anchors and lookbehind.
+     */
+    Map<String, int[]> findAll(String text, int start) {
+        BitSet candidates = new BitSet(regexes.length);
+        for (int id = 0; id < regexes.length; id++) {
+            if (regexes[id].mightMatch(text)) {
+                candidates.set(id);
+            }
+        }
+        Map<String, int[]> result = new HashMap<>();
+        if (candidates.isEmpty()) {
+            return result;
+        }
+
+        int[][] offsets = new int[regexes.length][];
+        int[] counts = new int[regexes.length];
+        int[] nextAllowedStart = new int[regexes.length];
+        Matcher matcher = regionMatcher(combinedPatterns.computeIfAbsent(candidates, this::combine), text, start);
+        while (matcher.find()) {
+            int position = matcher.start();
+            for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+                String group = groupName(id);
+                if (matcher.start(group) == position && position >= nextAllowedStart[id]) {
+                    offsets[id] = LiteralMatcher.append(offsets[id], counts[id]++, position);
+                    int end = matcher.end(group);
+                    // As for Matcher.find(), the next match may not start within this one (or at an empty match)
+                    nextAllowedStart[id] = end == position ? end + 1 : end;
+                }
+            }
+        }
+
+        for (int id = 0; id < regexes.length; id++) {
+            if (counts[id] > 0) {
+                result.put(regexes[id].getRegex(), Arrays.copyOf(offsets[id], counts[id]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return a Matcher for the text from the start offset, which can still see the text before the start (e.g. for
+     *      lookbehind), and for which the start does not match ^ or \A (unless it is the start of the text)
+     */
+    static Matcher regionMatcher(Pattern pattern, CharSequence text, int start) {
+        Matcher matcher = pattern.matcher(text);
+        if (start > 0) {
+            matcher.region(start, text.length()).useTransparentBounds(true).useAnchoringBounds(false);
+        }
+        return matcher;
+    }
+
+    /**
+     * Combine the regular expressions into a single Pattern of the form (?=p1|p2|..)(?=(?<r1>p1)?)(?=(?<r2>p2)?)..,
+     * which matches (with zero width) at each position where any of them matches, and captures each one that does.
+     */
+    private Pattern combine(BitSet ids) {
+        StringBuilder any = new StringBuilder("(?=");
+        StringBuilder each = new StringBuilder();
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            String regex = regexes[id].getRegex();
+            if (any.length() > 3) {
+                any.append('|');
+            }
+            any.append("(?:").append(regex).append(')');
+            each.append("(?=(?<").append(groupName(id)).append('>').append(regex).append(")?)");
+        }
+        return Pattern.compile(any.append(')').append(each).toString());
+    }
+
+    private static String groupName(int id) {
+        return "r" + id;
+    }
+
+}
@@ -7,4 +7,36 @@ public interface Rule {
 
     List<Violation> applyToFile(Path path);
 
+    /**
+     * @return the name of this rule, e.g. for logging; defaults to the simple class name
+     */
+    default String getName() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * @return false if this rule should never be applied to the file with the specified path (e.g., it is
+     *      excluded), so that the file need not be read at all; defaults to true
+     */
+    default boolean appliesTo(Path path) {
+        return true;
+    }
+
+    /**
+     * Apply this rule to the specified SourceFile, whose contents are shared with the other rules
+     * applied to the same file. Defaults to calling {@link #applyToFile(Path)}.
+     */
+    default List<Violation> applyToSourceFile(SourceFile sourceFile) {
+        return applyToFile(sourceFile.getPath());
+    }
+
+    /**
+     * @return a string that identifies the configuration of this rule, so that it changes whenever that
+     *      configuration changes (used to invalidate cached results); or null if not supported, which
+     *      disables result caching. Defaults to null.
+     */
+    default String getFingerprint() {
+        return null;
+    }
+
 }
@@ -0,0 +1,115 @@
+package org.dx42.kibosh.rule;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Getter;
+
+/**
+ * A list of rules compiled before scanning, rather than on first use: every regular expression and exclude
+ * filename pattern of each TextRule (and LineRule) is compiled (and so validated) up front, identical regular
+ * expressions are compiled only once and shared across rules, and the matchers shared by all rules (see
+ * LiteralMatcher and RegexMatcher) are created. The compiled regular expressions are held by the RuleSet, not
+ * by the rules, which are not modified (see applyRule). A RuleSet is immutable, and so may be shared across
+ * threads and runs.
+ */
+public class RuleSet {
+
+    @Getter
+    private final List<Rule> rules;
+
+    private final Map<String, CompiledRegex> compiledRegexes;
+
+    /** The LiteralMatcher for the illegal strings of all TextRules; or null if there are none. */
+    @Getter
+    private final LiteralMatcher literalMatcher;
+
+    /**
+     * The RegexMatcher for the (combinable) illegal regular expressions of all TextRules; or null if there are none.
+     */
+    @Getter
+    private final RegexMatcher regexMatcher;
+
+    /**
+     * A stable hash of the class and fingerprint of each rule, which changes whenever any rule or its configuration
+     * changes (e.g. to key cached results); or null if any rule does not provide a fingerprint.
+     */
+    @Getter
+    private final String fingerprint;
+
+    private RuleSet(List<Rule> rules) {
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+        Map<String, CompiledRegex> regexes = new HashMap<>();
+        List<String> errors = new ArrayList<>();
+        for (Rule rule: rules) {
+            if (rule instanceof TextRule) {
+                errors.addAll(((TextRule) rule).compile(regexes));
+            } else if (rule instanceof LineRule) {
+                errors.addAll(((LineRule) rule).compile());
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw new IllegalArgumentException("Invalid rules:\n    " + String.join("\n    ", errors));
+        }
+        this.compiledRegexes = Collections.unmodifiableMap(regexes);
+        this.literalMatcher = LiteralMatcher.forRules(rules);
+        this.regexMatcher = RegexMatcher.forRules(rules, compiledRegexes::get);
+        this.fingerprint = computeFingerprint(rules);
+    }
+
+    /**
+     * Compile the rules.
+     * @throws IllegalArgumentException if any regular expression or exclude filename pattern is invalid,
+     *      listing all of them
+     */
+    public static RuleSet compile(List<Rule> rules) {
+        return new RuleSet(rules);
+    }
+
+    /**
+     * Apply one of the rules of this RuleSet to the SourceFile. A TextRule uses the regular expressions compiled
+     * for this RuleSet, which are held here rather than by the rule, so that a rule may be shared by RuleSets.
+     */
+    public List<Violation> applyRule(Rule rule, SourceFile sourceFile) {
+        if (rule instanceof TextRule) {
+            return ((TextRule) rule).applyToSourceFile(sourceFile, compiledRegexes::get);
+        }
+        return rule.applyToSourceFile(sourceFile);
+    }
+
+    /**
+     * @return the CompiledRegex shared by all of the rules for the regular expression; or null if no rule has it
+     */
+    public CompiledRegex getCompiledRegex(String regex) {
+        return compiledRegexes.get(regex);
+    }
+
+    private static String computeFingerprint(List<Rule> rules) {
+        StringBuilder builder = new StringBuilder();
+        for (Rule rule: rules) {
+            String ruleFingerprint = rule.getFingerprint();
+            if (ruleFingerprint == null) {
+                return null;
+            }
+            builder.append(Fingerprints.of(rule.getClass().getName(), ruleFingerprint));
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(builder.toString().getBytes(UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b: digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
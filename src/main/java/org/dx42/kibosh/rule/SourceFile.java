@@ -0,0 +1,318 @@
+package org.dx42.kibosh.rule;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * A single source file being checked, shared by all rules applied to that file. The file contents
+ * are read from disk at most once (on first access), and the decoded text is likewise cached.
+ *
+ * A SourceFile may also be one chunk of a very large file (see {@link SourceFileLoader#readChunks}).
+ * The text of a chunk may extend past the part that the chunk is responsible for (its owned length)
+ * to overlap the start of the next chunk, so that matches that span the chunk boundary are found. It
+ * may likewise start with the end of the previous chunk, as context for anchors and lookbehind.
+ * File-level checks, such as for required strings, combine the results for all of the chunks of the
+ * file (see FileChunks).
+ */
+public class SourceFile {
+
+    @Getter
+    private final Path path;
+
+    /** The file attributes, if available from the file walk; otherwise null. */
+    @Getter
+    private final BasicFileAttributes attributes;
+
+    private final SourceFileLoader loader;
+    private final LiteralMatcher literalMatcher;
+    private final RegexMatcher regexMatcher;
+
+    /** True if this is one chunk of a larger file. */
+    @Getter
+    private final boolean chunk;
+
+    /** True if this is the whole file or the first chunk of a file. */
+    @Getter
+    private final boolean firstChunk;
+
+    /** For a chunk, the state shared by all of the chunks of the file; otherwise null. */
+    @Getter(AccessLevel.PACKAGE)
+    private final FileChunks fileChunks;
+
+    /** For a chunk, the offset of the part of the text that the chunk is responsible for; any text before it is context. */
+    @Getter(AccessLevel.PACKAGE)
+    private final int ownedStart;
+
+    /** For a chunk, the length of the text (from ownedStart) that the chunk is responsible for. */
+    private final int ownedLength;
+
+    /** The line number of the first line of the text; greater than 1 for most chunks after the first. */
+    private final int firstLineNumber;
+
+    private ByteBuffer byteBuffer;
+    private long bytesRead;
+    private String text;
+    private LineIndex lineIndex;
+    private SourceRegions regions;
+    private Map<String, int[]> literalOffsets;
+    private Map<String, int[]> regexOffsets;
+    private AsciiBytes asciiBytes;
+    private String textPrefix;
+    private long textPrefixKey;
+    private volatile boolean ruleAborted;
+
+    @Builder(access = AccessLevel.PACKAGE)
+    private SourceFile(Path path, BasicFileAttributes attributes, SourceFileLoader loader, LiteralMatcher literalMatcher,
+            RegexMatcher regexMatcher, String text, int chunkOwnedStart, Integer chunkOwnedLength, Integer firstLineNumber,
+            boolean firstChunk, FileChunks fileChunks) {
+        this.path = path;
+        this.attributes = attributes;
+        this.loader = loader != null ? loader : SourceFileLoader.DEFAULT;
+        this.literalMatcher = literalMatcher;
+        this.regexMatcher = regexMatcher;
+        this.text = text;
+        this.chunk = chunkOwnedLength != null;
+        this.firstChunk = chunkOwnedLength == null || firstChunk;
+        this.fileChunks = fileChunks;
+        this.ownedStart = chunkOwnedStart;
+        this.ownedLength = chunkOwnedLength != null ? chunkOwnedLength : Integer.MAX_VALUE;
+        this.firstLineNumber = firstLineNumber != null ? firstLineNumber : 1;
+    }
+
+    /**
+     * Create a SourceFile whose contents are lazily read from the specified path.
+     */
+    public static SourceFile of(Path path) {
+        return of(path, null);
+    }
+
+    /**
+     * Create a SourceFile whose contents are lazily read from the specified path, along with
+     * the file attributes (if any) from the file walk.
+     */
+    public static SourceFile of(Path path, BasicFileAttributes attributes) {
+        return of(path, attributes, null);
+    }
+
+    /**
+     * Create a SourceFile whose contents are lazily read from the specified path. The (optional)
+     * LiteralMatcher is used to find the occurrences of all of its literals in a single pass.
+     */
+    public static SourceFile of(Path path, BasicFileAttributes attributes, LiteralMatcher literalMatcher) {
+        return SourceFileLoader.DEFAULT.load(path, attributes, literalMatcher, null);
+    }
+
+    /**
+     * Create a SourceFile with the specified (already available) text contents.
+     */
+    public static SourceFile ofText(Path path, String text) {
+        return builder().path(path).text(text).build();
+    }
+
+    /**
+     * @return the raw (undecoded) contents of this file as a read-only ByteBuffer, which may be memory-mapped
+     */
+    public ByteBuffer getByteBuffer() {
+        return loadByteBuffer().asReadOnlyBuffer();
+    }
+
+    /**
+     * @return the raw (undecoded) contents of this file; a copy if the file is memory-mapped
+     */
+    public byte[] getBytes() {
+        ByteBuffer buffer = loadByteBuffer();
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.array().length == buffer.remaining()) {
+            return buffer.array();
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    public String getText() {
+        if (text == null) {
+            text = loader.decode(loadByteBuffer().duplicate());
+        }
+        return text;
+    }
+
+    /**
+     * Get the start of the text: the first maxLines lines (if greater than zero), and at most the text decoded
+     * from the first maxBytes bytes (if greater than zero). If the contents of this file have not yet been
+     * read, then only that prefix is read from the file.
+     */
+    public String getTextPrefix(int maxLines, int maxBytes) {
+        long key = ((long) maxLines << 32) | (maxBytes & 0xFFFFFFFFL);
+        if (textPrefix == null || textPrefixKey != key) {
+            textPrefix = SourceFileLoader.firstLines(readTextPrefix(maxLines, maxBytes), maxLines);
+            textPrefixKey = key;
+        }
+        return textPrefix;
+    }
+
+    private String readTextPrefix(int maxLines, int maxBytes) {
+        if (text != null && maxBytes <= 0) {
+            return text;
+        }
+        ByteBuffer prefix;
+        if (isLoaded()) {
+            prefix = loadByteBuffer().duplicate();
+            if (maxBytes > 0 && prefix.remaining() > maxBytes) {
+                prefix.limit(prefix.position() + maxBytes);
+            }
+        } else {
+            prefix = loader.readPrefix(path, maxLines, maxBytes);
+            bytesRead += prefix.remaining();
+        }
+        return loader.decode(prefix);
+    }
+
+    /**
+     * @return the LineIndex for the text of this file, built on first access
+     */
+    public LineIndex getLineIndex() {
+        if (lineIndex == null) {
+            lineIndex = new LineIndex(getText(), firstLineNumber);
+        }
+        return lineIndex;
+    }
+
+    /**
+     * Pass each line of the text (without its "\n" or "\r\n" line terminator; as for LineIndex, a lone '\r' does not
+     * end a line) and its line number to the consumer in turn. If the contents of this file have not been read, then
+     * the lines are streamed from the file, so that only one line is held in memory at a time. For a chunk, only the
+     * lines that start within the part that the chunk is responsible for are included.
+     */
+    public void forEachLine(ObjIntConsumer<String> consumer) {
+        if (!isLoaded()) {
+            bytesRead += loader.readLines(path, consumer);
+            return;
+        }
+        String lines = getText();
+        if (ownedStart > 0 || lines.length() > ownedLength) {
+            lines = lines.substring(ownedStart, (int) Math.min(lines.length(), (long) ownedStart + ownedLength));
+        }
+        int lineNumber = firstLineNumber + SourceFileLoader.countNewlines(getText(), ownedStart);
+        try {
+            SourceFileLoader.forEachLine(new StringReader(lines), lineNumber, consumer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the index of the code, comment and string literal regions of the text of this file, built on first access
+     */
+    public SourceRegions getRegions() {
+        if (regions == null) {
+            regions = SourceRegions.of(getText());
+        }
+        return regions;
+    }
+
+    /**
+     * @return a view of the raw bytes of this file for finding ASCII literals without decoding the file; or null
+     *      if not supported, because of the charset, or because the text is already available (e.g. for a chunk)
+     */
+    public AsciiBytes getAsciiBytes() {
+        if (asciiBytes == null) {
+            if (chunk || (byteBuffer == null && text != null) || !AsciiBytes.isSupported(loader.getCharset())) {
+                return null;
+            }
+            asciiBytes = new AsciiBytes(loadByteBuffer(), loader.getCharset(), firstLineNumber, literalMatcher);
+        }
+        return asciiBytes;
+    }
+
+    /**
+     * @return true if a match starting at the specified offset within the text should be reported for
+     *      this SourceFile; i.e. false only if it is within the overlap with the next or previous chunk
+     */
+    public boolean isOwnedOffset(int offset) {
+        return offset >= ownedStart && offset - ownedStart < ownedLength;
+    }
+
+    /**
+     * Find the (non-overlapping) occurrences of the literal string within the text of this file.
+     * If the literal is one of those of the LiteralMatcher, then the occurrences of all of its
+     * literals are found in a single pass (once), and subsequent calls share that result.
+     * @return the sorted starting offsets of each occurrence
+     */
+    public int[] findLiteral(String literal) {
+        if (literalMatcher == null || !literalMatcher.contains(literal)) {
+            return LiteralMatcher.findAll(getText(), literal);
+        }
+        if (literalOffsets == null) {
+            literalOffsets = literalMatcher.findAll(getText());
+        }
+        int[] offsets = literalOffsets.get(literal);
+        return offsets == null ? new int[0] : offsets;
+    }
+
+    /**
+     * Find the starting offsets of the (non-overlapping) matches of the regular expression within the text of
+     * this file, if it is one of those of the RegexMatcher. The matches of all of its regular expressions are
+     * then found in a single pass (once), and subsequent calls share that result.
+     * @return the sorted starting offsets of each match; or null if the regular expression is not one of those
+     *      of the RegexMatcher, and so must be matched separately
+     */
+    public int[] findRegex(String regex) {
+        if (regexMatcher == null || !regexMatcher.contains(regex)) {
+            return null;
+        }
+        if (regexOffsets == null) {
+            regexOffsets = regexMatcher.findAll(getText(), ownedStart);
+        }
+        int[] offsets = regexOffsets.get(regex);
+        return offsets == null ? new int[0] : offsets;
+    }
+
+    /**
+     * @return true if a rule was aborted for this file (e.g. because it exceeded its regular expression time
+     *      limit), and so its violations are incomplete and must not be cached
+     */
+    public boolean isRuleAborted() {
+        return ruleAborted;
+    }
+
+    void markRuleAborted() {
+        ruleAborted = true;
+    }
+
+    /**
+     * @return the number of bytes read from disk for this file; zero if not (yet) read
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    private ByteBuffer loadByteBuffer() {
+        if (byteBuffer == null) {
+            if (text != null) {
+                byteBuffer = ByteBuffer.wrap(text.getBytes(loader.getCharset()));
+            } else {
+                byteBuffer = loader.readBytes(path, attributes);
+                bytesRead += byteBuffer.remaining();
+            }
+        }
+        return byteBuffer;
+    }
+
+    /**
+     * @return true if the contents of this file have been read (or supplied)
+     */
+    public boolean isLoaded() {
+        return byteBuffer != null || text != null;
+    }
+
+}
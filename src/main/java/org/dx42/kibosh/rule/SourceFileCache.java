@@ -0,0 +1,93 @@
+package org.dx42.kibosh.rule;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import lombok.Value;
+
+/**
+ * A bounded cache of the raw contents of source files, shared by the SourceFileLoaders that use it; e.g. across
+ * the runs of a KiboshSession. A cached entry is only used if the size and last-modified time of the file are
+ * unchanged. The least recently used entries are evicted once the total size of the cached contents exceeds
+ * maxBytes. A SourceFileCache is thread-safe.
+ */
+public class SourceFileCache {
+
+    private final long maxBytes;
+    private final Map<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+    private long hitCount;
+    private long missCount;
+
+    public SourceFileCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the cached contents of the file if it is unchanged; otherwise the contents read by the reader,
+     *      which are then cached (if not larger than maxBytes)
+     */
+    ByteBuffer get(Path path, BasicFileAttributes attributes, Function<Path, ByteBuffer> reader) {
+        Path key = path.toAbsolutePath().normalize();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.size == attributes.size() && entry.lastModified == lastModified) {
+                hitCount++;
+                return entry.contents.duplicate();
+            }
+            missCount++;
+        }
+
+        // Read outside of the lock, so that other files can be read concurrently
+        ByteBuffer contents = reader.apply(path);
+        if (contents.remaining() <= maxBytes) {
+            put(key, new Entry(attributes.size(), lastModified, contents.duplicate()));
+        }
+        return contents;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        cachedBytes = 0;
+    }
+
+    /** @return the total size in bytes of the cached contents */
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    private synchronized void put(Path key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            cachedBytes -= previous.contents.remaining();
+        }
+        cachedBytes += entry.contents.remaining();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (cachedBytes > maxBytes && iterator.hasNext()) {
+            cachedBytes -= iterator.next().contents.remaining();
+            iterator.remove();
+        }
+    }
+
+    @Value
+    private static class Entry {
+        long size;
+        long lastModified;
+        ByteBuffer contents;
+    }
+
+}
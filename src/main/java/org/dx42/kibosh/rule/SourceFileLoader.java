@@ -0,0 +1,316 @@
+package org.dx42.kibosh.rule;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Reads the contents of source files; i.e., the file loading strategy. Files whose size is at least
+ * the memoryMapThreshold are memory-mapped rather than copied onto the heap. The contents are decoded
+ * using an explicit charset (UTF-8 by default) rather than the platform default.
+ */
+@Builder
+public class SourceFileLoader {
+
+    public static final SourceFileLoader DEFAULT = SourceFileLoader.builder().build();
+
+    private static final int PREFIX_BLOCK_SIZE = 8 * 1024;
+
+    @Getter
+    @Builder.Default
+    private final Charset charset = UTF_8;
+
+    /** Files of at least this many bytes are memory-mapped. Defaults to 1 MB. */
+    @Getter
+    @Builder.Default
+    private final long memoryMapThreshold = 1024 * 1024;
+
+    /** An optional cache of file contents, e.g. shared across runs; used only for files with attributes. */
+    @Getter
+    private final SourceFileCache cache;
+
+    /**
+     * Create a SourceFile whose contents are lazily read from the specified path using this loader. The
+     * (optional) LiteralMatcher and RegexMatcher are shared by all of the rules applied to the file.
+     */
+    public SourceFile load(Path path, BasicFileAttributes attributes, LiteralMatcher literalMatcher, RegexMatcher regexMatcher) {
+        return SourceFile.builder()
+                .path(path)
+                .attributes(attributes)
+                .loader(this)
+                .literalMatcher(literalMatcher)
+                .regexMatcher(regexMatcher)
+                .build();
+    }
+
+    /**
+     * Read the file as a stream of line-aligned chunks of (at most) chunkSize characters, and pass each in turn
+     * to the consumer as a SourceFile. The text of each chunk also includes up to overlap characters from the
+     * start of the next chunk, so that matches spanning the boundary are found; matches that start within the
+     * overlap are left to the next chunk. Likewise, the text starts with up to overlap characters from the end
+     * of the previous chunk, as context for anchors (e.g. ^ or \A) and lookbehind. Only one chunk is held in
+     * memory at a time, unless the consumer holds onto them (e.g. to check several chunks in parallel).
+     */
+    public void readChunks(Path path, BasicFileAttributes attributes, LiteralMatcher literalMatcher, RegexMatcher regexMatcher,
+            int chunkSize, int overlap, Consumer<SourceFile> consumer) {
+        char[] buffer = new char[overlap + chunkSize + overlap];
+        int contextLength = 0;
+        int filled = 0;
+        int firstLineNumber = 1;
+        boolean firstChunk = true;
+        int chunkCount = 0;
+        FileChunks fileChunks = new FileChunks();
+        try (Reader reader = new InputStreamReader(Files.newInputStream(path), charset)) {
+            while (true) {
+                int count = 0;
+                int end = contextLength + chunkSize + overlap;
+                while (filled < end && (count = reader.read(buffer, filled, end - filled)) != -1) {
+                    filled += count;
+                }
+                boolean endOfFile = count == -1;
+                int ownedLength = endOfFile ? filled - contextLength : chunkEnd(buffer, contextLength, chunkSize);
+                int ownedEnd = contextLength + ownedLength;
+                chunkCount++;
+                if (endOfFile) {
+                    fileChunks.setChunkCount(chunkCount);
+                }
+                SourceFile chunk = SourceFile.builder()
+                        .path(path)
+                        .attributes(attributes)
+                        .loader(this)
+                        .literalMatcher(literalMatcher)
+                        .regexMatcher(regexMatcher)
+                        .text(new String(buffer, 0, Math.min(filled, ownedEnd + overlap)))
+                        .chunkOwnedStart(contextLength)
+                        .chunkOwnedLength(ownedLength)
+                        .firstLineNumber(firstLineNumber - countNewlines(buffer, 0, contextLength))
+                        .firstChunk(firstChunk)
+                        .fileChunks(fileChunks)
+                        .build();
+                consumer.accept(chunk);
+                if (endOfFile) {
+                    return;
+                }
+
+                firstLineNumber += countNewlines(buffer, contextLength, ownedEnd);
+                firstChunk = false;
+                // Keep the end of this chunk as the context for the next
+                int nextContextStart = Math.max(ownedEnd - overlap, 0);
+                filled -= nextContextStart;
+                contextLength = ownedEnd - nextContextStart;
+                System.arraycopy(buffer, nextContextStart, buffer, 0, filled);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Read the file one line at a time, passing each line (without its line terminator) and its line number to
+     * the consumer; only one line is held in memory at a time.
+     * @return the number of bytes read
+     */
+    long readLines(Path path, ObjIntConsumer<String> consumer) {
+        try (CountingInputStream input = new CountingInputStream(Files.newInputStream(path));
+                Reader reader = new InputStreamReader(input, charset)) {
+            forEachLine(reader, 1, consumer);
+            return input.count;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Pass each line of the text and its line number to the consumer. As for LineIndex, lines are separated by
+     * '\n' only; a '\r' before it (i.e. CRLF) is not included in the line, but a lone '\r' does not end a line.
+     */
+    static void forEachLine(Reader reader, int firstLineNumber, ObjIntConsumer<String> consumer) throws IOException {
+        int lineNumber = firstLineNumber;
+        char[] buffer = new char[PREFIX_BLOCK_SIZE];
+        StringBuilder line = new StringBuilder();
+        int count;
+        while ((count = reader.read(buffer)) != -1) {
+            int start = 0;
+            for (int i = 0; i < count; i++) {
+                if (buffer[i] == '\n') {
+                    line.append(buffer, start, i - start);
+                    consumer.accept(withoutCarriageReturn(line), lineNumber++);
+                    line.setLength(0);
+                    start = i + 1;
+                }
+            }
+            line.append(buffer, start, count - start);
+        }
+        if (line.length() > 0) {
+            consumer.accept(withoutCarriageReturn(line), lineNumber);
+        }
+    }
+
+    /**
+     * Read the start of the file: at most maxBytes bytes (if greater than zero), and (if maxLines is greater
+     * than zero) only as much as needed for the first maxLines lines.
+     */
+    ByteBuffer readPrefix(Path path, int maxLines, int maxBytes) {
+        int limit = maxBytes > 0 ? maxBytes : Integer.MAX_VALUE;
+        boolean countLines = maxLines > 0 && AsciiBytes.isSupported(charset);
+        byte[] bytes = new byte[Math.min(limit, PREFIX_BLOCK_SIZE)];
+        int length = 0;
+        int lineCount = 0;
+        try (InputStream input = Files.newInputStream(path)) {
+            while (length < limit) {
+                if (length == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, (int) Math.min(limit, 2L * length));
+                }
+                int count = input.read(bytes, length, bytes.length - length);
+                if (count == -1) {
+                    break;
+                }
+                if (countLines) {
+                    lineCount += countNewlines(bytes, length, length + count);
+                }
+                length += count;
+                if (countLines && lineCount >= maxLines) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return ByteBuffer.wrap(bytes, 0, length);
+    }
+
+    ByteBuffer readBytes(Path path, BasicFileAttributes attributes) {
+        if (cache != null && attributes != null) {
+            return cache.get(path, attributes, this::readBytes);
+        }
+        return readBytes(path);
+    }
+
+    private ByteBuffer readBytes(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= memoryMapThreshold) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            return ByteBuffer.wrap(Files.readAllBytes(path));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    String decode(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), charset);
+        }
+        return charset.decode(buffer).toString();
+    }
+
+    /**
+     * @return the text, truncated after the first maxLines lines if maxLines is greater than zero
+     */
+    static String firstLines(String text, int maxLines) {
+        if (maxLines <= 0) {
+            return text;
+        }
+        int index = -1;
+        for (int line = 0; line < maxLines; line++) {
+            index = text.indexOf('\n', index + 1);
+            if (index == -1) {
+                return text;
+            }
+        }
+        return text.substring(0, index + 1);
+    }
+
+    /**
+     * @return the length of the chunk: up to and including the last newline within chunkSize, if any
+     */
+    private static int chunkEnd(char[] buffer, int start, int chunkSize) {
+        for (int i = start + chunkSize - 1; i >= start; i--) {
+            if (buffer[i] == '\n') {
+                return i + 1 - start;
+            }
+        }
+        return chunkSize;
+    }
+
+    private static String withoutCarriageReturn(StringBuilder line) {
+        int end = line.length();
+        return end > 0 && line.charAt(end - 1) == '\r' ? line.substring(0, end - 1) : line.toString();
+    }
+
+    private static int countNewlines(byte[] bytes, int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            if (bytes[i] == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int countNewlines(char[] buffer, int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            if (buffer[i] == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    static int countNewlines(CharSequence text, int end) {
+        int count = 0;
+        for (int i = 0; i < end; i++) {
+            if (text.charAt(i) == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream input) {
+            super(input);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int n = super.read(bytes, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+
+}
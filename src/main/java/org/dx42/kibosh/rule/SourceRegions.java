@@ -0,0 +1,149 @@
+package org.dx42.kibosh.rule;
+
+import java.util.Arrays;
+
+/**
+ * An index of the regions of Java-like source text: code, line and block comments, and string (and
+ * character) literals and text blocks; built by a single lightweight lexing pass, so that matches can
+ * be filtered by the region they start in (see TextRule onlyInCode and onlyInComments).
+ *
+ * The lexer knows only comment and literal syntax. For a chunk of a larger file, the text is assumed
+ * to start in code, so a region that spans the chunk boundary may be misclassified within the chunk.
+ */
+public class SourceRegions {
+
+    public enum Type { CODE, LINE_COMMENT, BLOCK_COMMENT, STRING, TEXT_BLOCK }
+
+    private static final String TEXT_BLOCK_QUOTES = "\"\"\"";
+
+    // The regions cover the whole text; each ends where the next one starts
+    private int[] starts = new int[16];
+    private Type[] types = new Type[16];
+    private int count;
+
+    private SourceRegions(CharSequence text) {
+        lex(text);
+    }
+
+    public static SourceRegions of(CharSequence text) {
+        return new SourceRegions(text);
+    }
+
+    /**
+     * @return the type of the region containing the offset within the text
+     */
+    public Type getType(int offset) {
+        int index = Arrays.binarySearch(starts, 0, count, offset);
+        return types[index >= 0 ? index : -index - 2];
+    }
+
+    public boolean isCode(int offset) {
+        return getType(offset) == Type.CODE;
+    }
+
+    public boolean isComment(int offset) {
+        Type type = getType(offset);
+        return type == Type.LINE_COMMENT || type == Type.BLOCK_COMMENT;
+    }
+
+    private void lex(CharSequence text) {
+        add(0, Type.CODE);
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            char next = i + 1 < length ? text.charAt(i + 1) : 0;
+            int end;
+            if (c == '/' && next == '/') {
+                add(i, Type.LINE_COMMENT);
+                end = indexOf(text, "\n", i + 2);
+            } else if (c == '/' && next == '*') {
+                add(i, Type.BLOCK_COMMENT);
+                end = indexOf(text, "*/", i + 2);
+                end = end < length ? end + 2 : length;
+            } else if (c == '"' && startsWith(text, TEXT_BLOCK_QUOTES, i)) {
+                add(i, Type.TEXT_BLOCK);
+                end = endOfTextBlock(text, i + TEXT_BLOCK_QUOTES.length());
+            } else if (c == '"' || c == '\'') {
+                add(i, Type.STRING);
+                end = endOfLiteral(text, i + 1, c);
+            } else {
+                i++;
+                continue;
+            }
+            i = end;
+            add(i, Type.CODE);
+        }
+    }
+
+    private void add(int start, Type type) {
+        if (count > 0 && starts[count - 1] == start) {
+            count--;
+        }
+        if (count > 0 && types[count - 1] == type) {
+            return;
+        }
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            types = Arrays.copyOf(types, count * 2);
+        }
+        starts[count] = start;
+        types[count++] = type;
+    }
+
+    /**
+     * @return the offset following the closing quote of a string or character literal; or of the end of the
+     *      line, if it is not closed
+     */
+    private static int endOfLiteral(CharSequence text, int from, char quote) {
+        int i = from;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == quote) {
+                return i + 1;
+            } else if (c == '\n') {
+                return i;
+            } else {
+                i++;
+            }
+        }
+        return text.length();
+    }
+
+    private static int endOfTextBlock(CharSequence text, int from) {
+        int i = from;
+        while (i < text.length()) {
+            if (text.charAt(i) == '\\') {
+                i += 2;
+            } else if (startsWith(text, TEXT_BLOCK_QUOTES, i)) {
+                return i + TEXT_BLOCK_QUOTES.length();
+            } else {
+                i++;
+            }
+        }
+        return text.length();
+    }
+
+    /**
+     * @return the index of the string within the text, starting at from; or the length of the text if not found
+     */
+    private static int indexOf(CharSequence text, String string, int from) {
+        int index = from < text.length() ? LiteralMatcher.indexOf(text, string, from) : -1;
+        return index < 0 ? text.length() : index;
+    }
+
+    private static boolean startsWith(CharSequence text, String prefix, int offset) {
+        if (offset + prefix.length() > text.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (text.charAt(offset + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -1,22 +1,24 @@
 package org.dx42.kibosh.rule;
 
+import lombok.AccessLevel;
 import lombok.Builder;
+import lombok.Getter;
 import lombok.Singular;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
+import org.dx42.kibosh.rule.TimeLimitedCharSequence.TimeLimitExceededException;
 import org.dx42.kibosh.rule.Violation.Severity;
 
-import java.io.IOException;
-import java.nio.file.FileSystems;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 @Slf4j
 @Builder
@@ -27,6 +29,7 @@ public class TextRule implements Rule {
     // For testing
     protected static Function<Path, String> readFile = TextRule::readFileContents;
 
+    @Getter
     private final String name;
     private final String description;
 
@@ -45,105 +48,367 @@ public class TextRule implements Rule {
     @Singular
     List<String> requiredRegularExpressions;
 
-    /** Filenames to skip applying this rule. May contain wildcards ('*' or '?'). */
+    /**
+     * Filenames to skip applying this rule. May contain wildcards ('*' or '?'). A pattern that contains
+     * a '/' is matched against the whole file path rather than just the file name; e.g. "**&#47;generated/**".
+     */
     @Singular
     List<String> excludeFilenames;
 
-    private final Map<String, Pattern> illegalRegularExpressionPatterns = new LinkedHashMap<>();
+    /**
+     * If true, search for the illegal and required strings (if all ASCII) directly within the raw bytes of
+     * the file, without decoding it, where the charset allows. The file is then only decoded if needed for
+     * the regular expressions. Defaults to false.
+     */
+    private final boolean asciiFastPath;
+
+    /**
+     * The maximum time (in milliseconds) to spend matching the regular expressions of this rule against each
+     * file, to contain catastrophic backtracking. If exceeded, this rule is aborted for that file, and a WARNING
+     * violation is reported instead. The regular expressions of a rule with a time limit are not combined with
+     * those of other rules. Defaults to 0, i.e. no limit.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private final long regexTimeLimitMillis;
+
+    /**
+     * If greater than zero, the required strings and regular expressions must occur within this many lines
+     * from the start of the file. If the rule has no illegal strings or regular expressions, then only that
+     * part of the file is read. Defaults to 0, i.e. anywhere within the file.
+     */
+    private final int requiredWithinLines;
+
+    /**
+     * If greater than zero, the required strings and regular expressions must occur within this many bytes
+     * from the start of the file; as for requiredWithinLines. Defaults to 0, i.e. anywhere within the file.
+     */
+    private final int requiredWithinBytes;
+
+    /**
+     * If true, only report illegal strings and regular expressions that start within code; i.e. not within a
+     * comment or a string literal (see SourceRegions). Defaults to false.
+     */
+    private final boolean onlyInCode;
+
+    /**
+     * If true, only report illegal strings and regular expressions that start within a (line or block) comment;
+     * e.g. for "TODO". Defaults to false.
+     */
+    private final boolean onlyInComments;
+
+    @Getter(value = AccessLevel.PRIVATE, lazy = true)
+    private final List<PathMatcher> excludeFilenameMatchers = ExcludeFilenames.compile(excludeFilenames);
+
+    @Getter(value = AccessLevel.PRIVATE, lazy = true)
+    private final LiteralMatcher requiredStringMatcher = new LiteralMatcher(requiredStrings);
+
+    @Getter(value = AccessLevel.PRIVATE, lazy = true)
+    private final boolean asciiStrings = AsciiBytes.isAscii(illegalStrings) && AsciiBytes.isAscii(requiredStrings);
+
+    // The illegal and required regular expressions, compiled on first use when not applied through a RuleSet
+    private final Map<String, CompiledRegex> compiledRegularExpressions = new ConcurrentHashMap<>();
 
     @Override
     public List<Violation> applyToFile(Path path) {
+        if (shouldExcludeFile(path)) {
+            return new ArrayList<>();
+        }
+        return applyToSourceFile(SourceFile.ofText(path, readFile.apply(path)));
+    }
+
+    @Override
+    public List<Violation> applyToSourceFile(SourceFile sourceFile) {
+        return applyToSourceFile(sourceFile, this::compiledRegexFor);
+    }
+
+    /**
+     * Apply this rule using the specified compiled regular expressions; e.g. those of a RuleSet.
+     */
+    List<Violation> applyToSourceFile(SourceFile sourceFile, Function<String, CompiledRegex> compiledRegexes) {
         List<Violation> violations = new ArrayList<>();
+        Path path = sourceFile.getPath();
 
         if (shouldExcludeFile(path)) {
             return violations;
         }
 
-        String fileContents = readFile.apply(path);
-        checkForIllegalStrings(path, fileContents, violations);
-        checkForIllegalRegularExpressions(path, fileContents, violations);
-        checkForRequiredStrings(path, fileContents, violations);
-        checkForRequiredRegularExpressions(path, fileContents, violations);
+        AsciiBytes asciiBytes = asciiFastPath && isAsciiStrings() ? sourceFile.getAsciiBytes() : null;
+        if (asciiBytes != null && !isRegionFiltered()) {
+            checkForIllegalStrings(path, asciiBytes, violations);
+        } else {
+            checkForIllegalStrings(sourceFile, violations);
+        }
+        long startTime = System.nanoTime();
+        try {
+            checkForIllegalRegularExpressions(sourceFile, compiledRegexes, violations, startTime);
+            // The start of a file that is scanned in chunks is within the first chunk
+            if (sourceFile.isFirstChunk() || !isRequiredWithinPrefix()) {
+                MissingRequired missing = new MissingRequired(findMissingRequiredStrings(sourceFile, asciiBytes),
+                        findMissingRequiredRegularExpressions(sourceFile, compiledRegexes, violations, startTime));
+                addMissingRequiredViolations(sourceFile, missing, violations);
+            }
+        } catch (TimeLimitExceededException e) {
+            // Already reported; skip the remaining checks for this file (or chunk), without reporting anything missing
+            sourceFile.markRuleAborted();
+            addMissingRequiredViolations(sourceFile, MissingRequired.NONE, violations);
+        }
 
         return violations;
     }
 
+    @Override
+    public boolean appliesTo(Path path) {
+        return !shouldExcludeFile(path);
+    }
+
+    @Override
+    public String getFingerprint() {
+        return Fingerprints.of(name, description, severity, illegalStrings, illegalRegularExpressions, requiredStrings,
+                requiredRegularExpressions, excludeFilenames, regexTimeLimitMillis, requiredWithinLines, requiredWithinBytes,
+                onlyInCode, onlyInComments);
+    }
+
+    /**
+     * Compile the regular expressions and exclude filename patterns of this rule now, rather than on first use
+     * (see RuleSet), adding the CompiledRegex for each regular expression not already in compiledRegexes to it.
+     * @return a description of each invalid regular expression or pattern; empty if all are valid
+     */
+    List<String> compile(Map<String, CompiledRegex> compiledRegexes) {
+        List<String> errors = new ArrayList<>();
+        List<String> regexes = new ArrayList<>(illegalRegularExpressions);
+        regexes.addAll(requiredRegularExpressions);
+        for (String regex: regexes) {
+            try {
+                compiledRegexes.computeIfAbsent(regex, CompiledRegex::compile);
+            } catch (PatternSyntaxException e) {
+                errors.add(name + ": invalid regular expression /" + regex + "/: " + e.getDescription());
+            }
+        }
+        try {
+            getExcludeFilenameMatchers();
+        } catch (IllegalArgumentException e) {
+            errors.add(name + ": invalid exclude filename pattern: " + e.getMessage());
+        }
+        if (onlyInCode && onlyInComments) {
+            errors.add(name + ": onlyInCode and onlyInComments cannot both be true");
+        }
+        getRequiredStringMatcher();
+        isAsciiStrings();
+        return errors;
+    }
+
     private boolean shouldExcludeFile(Path path) {
-        for (String excludeFilename: excludeFilenames) {
-            PathMatcher pathMatcher = FileSystems.getDefault().getPathMatcher("glob:" + excludeFilename);
-            if (pathMatcher.matches(path.getFileName())) {
-                return true;
+        return ExcludeFilenames.matches(getExcludeFilenameMatchers(), path);
+    }
+
+    private void checkForIllegalStrings(SourceFile sourceFile, List<Violation> violations) {
+        for (String illegalString: illegalStrings) {
+            for (int startIndex: sourceFile.findLiteral(illegalString)) {
+                if (startIndex < sourceFile.getOwnedStart()) {
+                    continue;
+                }
+                if (!sourceFile.isOwnedOffset(startIndex)) {
+                    break;
+                }
+                if (!isInMatchedRegion(sourceFile, startIndex)) {
+                    continue;
+                }
+                addViolation(violations, sourceFile, startIndex, "contains illegal string " + quoted(illegalString));
             }
         }
-        return false;
     }
 
-    private void checkForIllegalStrings(Path path, String fileContents, List<Violation> violations) {
+    private void checkForIllegalStrings(Path path, AsciiBytes asciiBytes, List<Violation> violations) {
         for (String illegalString: illegalStrings) {
-            int startIndex = 0;
-            while ((startIndex = fileContents.indexOf(illegalString, startIndex)) != -1) {
-                int lineNumber = getLineNumber(fileContents, startIndex);
+            for (int startIndex: asciiBytes.findLiteral(illegalString)) {
+                int lineNumber = asciiBytes.getLineNumber(startIndex);
                 String message = messagePrefix(path, lineNumber) + "contains illegal string " + quoted(illegalString);
-                addViolation(violations, message, lineNumber);
-                startIndex += illegalString.length();
+                addViolation(violations, message, lineNumber, asciiBytes.getColumnNumber(startIndex));
             }
         }
     }
 
-    private void checkForIllegalRegularExpressions(Path path, String fileContents, List<Violation> violations) {
+    private void checkForIllegalRegularExpressions(SourceFile sourceFile, Function<String, CompiledRegex> compiledRegexes,
+            List<Violation> violations, long startTime) {
         for (String illegalRegex: illegalRegularExpressions) {
-            Pattern pattern = patternForRegex(illegalRegex);
-            Matcher matcher = pattern.matcher(fileContents);
-            while (matcher.find()) {
-                int startIndex = matcher.start();
-                int lineNumber = getLineNumber(fileContents, startIndex);
-                String message = messagePrefix(path, lineNumber) + "contains illegal regular expression /" +  illegalRegex + "/";
-                addViolation(violations, message, lineNumber);
+            int[] offsets = regexTimeLimitMillis > 0 ? null : sourceFile.findRegex(illegalRegex);
+            if (offsets != null) {
+                for (int startIndex: offsets) {
+                    if (!sourceFile.isOwnedOffset(startIndex)) {
+                        break;
+                    }
+                    if (!isInMatchedRegion(sourceFile, startIndex)) {
+                        continue;
+                    }
+                    addViolation(violations, sourceFile, startIndex, "contains illegal regular expression /" +  illegalRegex + "/");
+                }
+                continue;
+            }
+
+            // Not combined with the other regular expressions (e.g. it has backreferences); match it separately
+            CompiledRegex compiledRegex = compiledRegexes.apply(illegalRegex);
+            if (!compiledRegex.mightMatch(sourceFile.getText())) {
+                continue;
+            }
+            Matcher matcher = matcher(compiledRegex, sourceFile.getText(), sourceFile.getOwnedStart(), startTime);
+            try {
+                while (matcher.find() && sourceFile.isOwnedOffset(matcher.start())) {
+                    if (!isInMatchedRegion(sourceFile, matcher.start())) {
+                        continue;
+                    }
+                    addViolation(violations, sourceFile, matcher.start(), "contains illegal regular expression /" +  illegalRegex + "/");
+                }
+            } catch (TimeLimitExceededException e) {
+                addTimeLimitViolation(violations, sourceFile, illegalRegex, startTime);
+                throw e;
             }
         }
     }
 
-    private void checkForRequiredStrings(Path path, String fileContents, List<Violation> violations) {
-        for (String requiredString: requiredStrings) {
-            if (!fileContents.contains(requiredString)) {
-                String message = messagePrefix(path, 1) + "does not contain required string " +  quoted(requiredString);
-                addViolation(violations, message);
+    private List<String> findMissingRequiredStrings(SourceFile sourceFile, AsciiBytes asciiBytes) {
+        if (requiredStrings.isEmpty()) {
+            return new ArrayList<>();
+        }
+        CharSequence text = asciiBytes != null && !isRequiredWithinPrefix() ? asciiBytes : requiredText(sourceFile);
+        // A single pass for all of the required strings, which stops once they have all been found
+        return getRequiredStringMatcher().findMissing(text);
+    }
+
+    private List<String> findMissingRequiredRegularExpressions(SourceFile sourceFile,
+            Function<String, CompiledRegex> compiledRegexes, List<Violation> violations, long startTime) {
+        List<String> missingRegexes = new ArrayList<>();
+        for (String requiredRegex: requiredRegularExpressions) {
+            CompiledRegex compiledRegex = compiledRegexes.apply(requiredRegex);
+            String fileContents = requiredText(sourceFile);
+            boolean found;
+            try {
+                found = compiledRegex.mightMatch(fileContents)
+                        && matcher(compiledRegex, fileContents, sourceFile.getOwnedStart(), startTime).find();
+            } catch (TimeLimitExceededException e) {
+                addTimeLimitViolation(violations, sourceFile, requiredRegex, startTime);
+                throw e;
+            }
+            if (!found) {
+                missingRegexes.add(requiredRegex);
             }
         }
+        return missingRegexes;
     }
 
-    private void checkForRequiredRegularExpressions(Path path, String fileContents, List<Violation> violations) {
+    /**
+     * Report the required strings and regular expressions that are missing. For a chunk, the missing ones are
+     * combined with those of the other chunks of the file, and only those missing from every chunk are reported,
+     * once all of the chunks have been checked.
+     */
+    private void addMissingRequiredViolations(SourceFile sourceFile, MissingRequired missing, List<Violation> violations) {
+        if (requiredStrings.isEmpty() && requiredRegularExpressions.isEmpty()) {
+            return;
+        }
+        if (sourceFile.isChunk() && !isRequiredWithinPrefix()) {
+            missing = sourceFile.getFileChunks().chunkChecked(this, missing, MissingRequired::retainAll);
+            if (missing == null) {
+                return;
+            }
+        }
+        for (String requiredString: requiredStrings) {
+            if (missing.getStrings().contains(requiredString)) {
+                String message = messagePrefix(sourceFile.getPath(), 1) + "does not contain required string " +  quoted(requiredString)
+                        + requiredWithinSuffix();
+                addViolation(violations, message);
+            }
+        }
         for (String requiredRegex: requiredRegularExpressions) {
-            Pattern pattern = patternForRegex(requiredRegex);
-            Matcher matcher = pattern.matcher(fileContents);
-            if (!matcher.find()) {
-                String message = messagePrefix(path, 1) + "does not contain required regular expression /" +  requiredRegex + "/";
+            if (missing.getRegularExpressions().contains(requiredRegex)) {
+                String message = messagePrefix(sourceFile.getPath(), 1) + "does not contain required regular expression /" +  requiredRegex + "/"
+                        + requiredWithinSuffix();
                 addViolation(violations, message);
             }
         }
     }
 
+    private boolean isRegionFiltered() {
+        return onlyInCode || onlyInComments;
+    }
+
+    /**
+     * @return true if a match starting at the offset is within the regions (e.g. code only) checked by this rule
+     */
+    private boolean isInMatchedRegion(SourceFile sourceFile, int offset) {
+        if (onlyInCode) {
+            return sourceFile.getRegions().isCode(offset);
+        }
+        return !onlyInComments || sourceFile.getRegions().isComment(offset);
+    }
+
     private String messagePrefix(Path path, int lineNumber) {
         return name + ": " + quoted(description) + "; " + "File=.(" + path.getFileName() + ":" + lineNumber + ") ";
     }
 
-    private Pattern patternForRegex(String regex) {
-        if (!illegalRegularExpressionPatterns.containsKey(regex)) {
-            illegalRegularExpressionPatterns.put(regex, Pattern.compile(regex));
+    private boolean isRequiredWithinPrefix() {
+        return requiredWithinLines > 0 || requiredWithinBytes > 0;
+    }
+
+    private String requiredText(SourceFile sourceFile) {
+        return isRequiredWithinPrefix() ? sourceFile.getTextPrefix(requiredWithinLines, requiredWithinBytes) : sourceFile.getText();
+    }
+
+    private String requiredWithinSuffix() {
+        if (requiredWithinLines > 0 && requiredWithinBytes > 0) {
+            return " within the first " + requiredWithinLines + " lines and " + requiredWithinBytes + " bytes";
+        }
+        if (requiredWithinLines > 0) {
+            return " within the first " + requiredWithinLines + " lines";
+        }
+        return requiredWithinBytes > 0 ? " within the first " + requiredWithinBytes + " bytes" : "";
+    }
+
+    /**
+     * @return a Matcher for the text from the start offset; any text before it (e.g. the end of the previous chunk)
+     *      is context for anchors and lookbehind
+     */
+    private Matcher matcher(CompiledRegex compiledRegex, String text, int start, long startTime) {
+        if (regexTimeLimitMillis <= 0) {
+            return RegexMatcher.regionMatcher(compiledRegex.getPattern(), text, start);
         }
-        return illegalRegularExpressionPatterns.get(regex);
+        long deadline = startTime + TimeUnit.MILLISECONDS.toNanos(regexTimeLimitMillis);
+        return RegexMatcher.regionMatcher(compiledRegex.getPattern(), new TimeLimitedCharSequence(text, deadline), start);
+    }
+
+    private void addTimeLimitViolation(List<Violation> violations, SourceFile sourceFile, String regex, long startTime) {
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        String message = messagePrefix(sourceFile.getPath(), 1) + "regular expression /" + regex + "/ exceeded the time limit of "
+                + regexTimeLimitMillis + " ms; rule aborted for this file after " + elapsedMillis + " ms";
+        log.warn(message);
+        violations.add(Violation.builder()
+                .rule(this)
+                .severity(Severity.WARNING)
+                .message(message)
+                .lineNumber(1)
+                .build());
+    }
+
+    private CompiledRegex compiledRegexFor(String regex) {
+        return compiledRegularExpressions.computeIfAbsent(regex, CompiledRegex::compile);
     }
 
     private void addViolation(List<Violation> violations, String message) {
-        addViolation(violations, message, 1);
+        addViolation(violations, message, 1, 0);
+    }
+
+    private void addViolation(List<Violation> violations, SourceFile sourceFile, int startIndex, String messageSuffix) {
+        LineIndex lineIndex = sourceFile.getLineIndex();
+        int lineNumber = lineIndex.getLineNumber(startIndex);
+        String message = messagePrefix(sourceFile.getPath(), lineNumber) + messageSuffix;
+        addViolation(violations, message, lineNumber, lineIndex.getColumnNumber(startIndex));
     }
 
-    private void addViolation(List<Violation> violations, String message, int lineNumber) {
+    private void addViolation(List<Violation> violations, String message, int lineNumber, int columnNumber) {
         Violation violation = Violation.builder()
                 .rule(this)
                 .severity(severity)
                 .message(message)
                 .lineNumber(lineNumber)
+                .columnNumber(columnNumber)
                 .build();
         violations.add(violation);
     }
@@ -153,18 +418,22 @@ public class TextRule implements Rule {
     }
 
     private static String readFileContents(Path path) {
-        try {
-            byte[] bytes = Files.readAllBytes(path);
-            return new String(bytes);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        return SourceFile.of(path).getText();
     }
 
-    private static int getLineNumber(String content, int index) {
-        if (index < 0 || index >= content.length()) {
-            throw new IndexOutOfBoundsException("Index out of bounds: " + index);
+    @Value
+    private static class MissingRequired {
+        static final MissingRequired NONE = new MissingRequired(new ArrayList<>(), new ArrayList<>());
+
+        List<String> strings;
+        List<String> regularExpressions;
+
+        MissingRequired retainAll(MissingRequired other) {
+            List<String> missingStrings = new ArrayList<>(strings);
+            missingStrings.retainAll(other.strings);
+            List<String> missingRegexes = new ArrayList<>(regularExpressions);
+            missingRegexes.retainAll(other.regularExpressions);
+            return new MissingRequired(missingStrings, missingRegexes);
         }
-        return content.substring(0, index).split("\n", -1).length;
     }
 }
@@ -0,0 +1,53 @@
+package org.dx42.kibosh.rule;
+
+/**
+ * Wraps a CharSequence so that accessing it throws a TimeLimitExceededException once a deadline has
+ * passed. A Matcher reads its input only through charAt(), so this bounds the time spent matching a
+ * regular expression, even one that backtracks catastrophically. The clock is only checked every
+ * CHECK_INTERVAL character accesses, to keep the overhead low.
+ */
+class TimeLimitedCharSequence implements CharSequence {
+
+    private static final int CHECK_INTERVAL = 4096;
+
+    private final CharSequence text;
+    private final long deadlineNanos;
+    private int accessCount;
+
+    TimeLimitedCharSequence(CharSequence text, long deadlineNanos) {
+        this.text = text;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    @Override
+    public int length() {
+        return text.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (++accessCount % CHECK_INTERVAL == 0 && System.nanoTime() - deadlineNanos > 0) {
+            throw new TimeLimitExceededException();
+        }
+        return text.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new TimeLimitedCharSequence(text.subSequence(start, end), deadlineNanos);
+    }
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+
+    static class TimeLimitExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        TimeLimitExceededException() {
+            super("Time limit exceeded", null, false, false);
+        }
+    }
+
+}
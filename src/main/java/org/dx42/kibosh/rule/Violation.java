@@ -13,6 +13,9 @@ public class Violation {
     String message;
     int lineNumber;
 
+    /** The (1-based) column number of the violation within its line, or 0 if not applicable. */
+    int columnNumber;
+
     @Builder.Default
     Severity severity = Severity.ERROR;
 
@@ -0,0 +1,146 @@
+package org.dx42.kibosh.runner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Determines the files to check in changed-files-only mode, rather than walking the base directories:
+ * from an explicit list, a list file, or the files changed relative to a git ref.
+ */
+@Slf4j
+class ChangedFiles {
+
+    private ChangedFiles() {
+    }
+
+    /**
+     * @return the files that have been added, copied, modified or renamed since the merge base of the git ref
+     *      and HEAD, including uncommitted and untracked changes, within the git working tree containing the
+     *      working directory
+     */
+    static List<Path> fromGitDiff(Path workingDirectory, String gitRef) {
+        Path topLevel = Paths.get(runGit(workingDirectory, "rev-parse", "--show-toplevel").get(0));
+        String mergeBase = runGit(workingDirectory, "merge-base", gitRef, "HEAD").get(0);
+        // With -z, the names are separated by NULs, and are not quoted or escaped
+        List<String> names = new ArrayList<>(runGit(topLevel, "diff", "--name-only", "-z", "--diff-filter=ACMR", mergeBase));
+        names.addAll(runGit(topLevel, "ls-files", "-z", "--others", "--exclude-standard"));
+
+        List<Path> files = new ArrayList<>();
+        for (String name: names) {
+            files.add(topLevel.resolve(name));
+        }
+        log.info("{} files changed since [{}] ({})", new Object[]{ files.size(), gitRef, mergeBase });
+        return files;
+    }
+
+    /**
+     * @return the files listed in the list file, one per line; blank lines are ignored
+     */
+    static List<Path> fromListFile(Path listFile) {
+        try {
+            List<Path> files = new ArrayList<>();
+            for (String line: Files.readAllLines(listFile, UTF_8)) {
+                if (!line.trim().isEmpty()) {
+                    files.add(Paths.get(line.trim()));
+                }
+            }
+            return files;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Select the changed files that exist, are within one of the base directories, and that a walk of that base
+     * directory by the file visitor would include; i.e. that match the file name pattern, and are not within an
+     * excluded directory or ignored. Each is keyed by the same path that walking its base directory would produce.
+     */
+    static Map<Path, BasicFileAttributes> select(Collection<Path> changedFiles, List<String> baseDirectories,
+            KiboshFileVisitor fileVisitor) throws IOException {
+        Map<Path, BasicFileAttributes> files = new TreeMap<>();
+        for (Path changedFile: changedFiles) {
+            Path absoluteFile = absolute(changedFile);
+            if (!Files.isRegularFile(absoluteFile)) {
+                continue;
+            }
+            for (String baseDirectory: baseDirectories) {
+                Path absoluteBaseDirectory = absolute(Paths.get(baseDirectory));
+                if (absoluteFile.startsWith(absoluteBaseDirectory)) {
+                    Path file = Paths.get(baseDirectory).resolve(absoluteBaseDirectory.relativize(absoluteFile));
+                    if (!fileVisitor.isExcludedWithin(Paths.get(baseDirectory), file, false)) {
+                        files.put(file, Files.readAttributes(file, BasicFileAttributes.class));
+                    }
+                    break;
+                }
+            }
+        }
+        return files;
+    }
+
+    private static List<String> runGit(Path directory, String... args) {
+        List<String> command = new ArrayList<>();
+        command.add("git");
+        command.addAll(Arrays.asList(args));
+        try {
+            Process process = new ProcessBuilder(command)
+                    .directory(directory.toFile())
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            char separator = Arrays.asList(args).contains("-z") ? '\0' : '\n';
+            List<String> lines = new ArrayList<>();
+            try (Reader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), UTF_8))) {
+                StringBuilder line = new StringBuilder();
+                for (int c = reader.read(); c != -1; c = reader.read()) {
+                    if (c != separator) {
+                        line.append((char) c);
+                        continue;
+                    }
+                    addLine(lines, line, separator);
+                }
+                addLine(lines, line, separator);
+            }
+            int exitCode = process.waitFor();
+            if (exitCode != 0 || lines.isEmpty() && !"diff".equals(args[0]) && !"ls-files".equals(args[0])) {
+                throw new IllegalStateException("Command " + command + " failed with exit code " + exitCode);
+            }
+            return lines;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void addLine(List<String> lines, StringBuilder line, char separator) {
+        if (separator == '\n' && line.length() > 0 && line.charAt(line.length() - 1) == '\r') {
+            line.setLength(line.length() - 1);
+        }
+        if (line.length() > 0) {
+            lines.add(line.toString());
+        }
+        line.setLength(0);
+    }
+
+    private static Path absolute(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+}
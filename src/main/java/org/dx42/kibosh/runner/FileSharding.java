@@ -0,0 +1,75 @@
+package org.dx42.kibosh.runner;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * Partitions the files to check into shards of roughly equal total size, so that the shards can be checked
+ * by separate processes (e.g. parallel test forks). The partition depends only on the file paths and sizes,
+ * so every process computes the same one. Each file is assigned in turn, largest first, to the shard with the
+ * smallest total size so far; files of the same size are ordered by a stable hash of their path.
+ */
+class FileSharding {
+
+    /** Added to the size of each file, to account for the fixed cost of checking it. */
+    private static final long FILE_OVERHEAD_BYTES = 4 * 1024;
+
+    private static final Comparator<Map.Entry<Path, BasicFileAttributes>> LARGEST_FIRST =
+            Comparator.<Map.Entry<Path, BasicFileAttributes>>comparingLong(entry -> -size(entry.getValue()))
+                    .thenComparingInt(entry -> stablePath(entry.getKey()).hashCode())
+                    .thenComparing(entry -> stablePath(entry.getKey()));
+
+    private FileSharding() {
+    }
+
+    /**
+     * @return the files (sorted by path) that belong to the shard with the specified (zero-based) index
+     */
+    static Map<Path, BasicFileAttributes> select(Map<Path, BasicFileAttributes> files, int shardIndex, int shardCount) {
+        if (shardIndex < 0 || shardIndex >= shardCount) {
+            throw new IllegalArgumentException("Invalid shard index " + shardIndex + " for shard count " + shardCount);
+        }
+        if (shardCount == 1) {
+            return files;
+        }
+
+        List<Map.Entry<Path, BasicFileAttributes>> entries = new ArrayList<>(files.entrySet());
+        entries.sort(LARGEST_FIRST);
+
+        // Each element is {total size, shard index}; the smallest total size (then shard index) first
+        PriorityQueue<long[]> shards = new PriorityQueue<>(Comparator.<long[]>comparingLong(shard -> shard[0])
+                .thenComparingLong(shard -> shard[1]));
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new long[]{ 0, i });
+        }
+
+        Map<Path, BasicFileAttributes> selectedFiles = new TreeMap<>();
+        for (Map.Entry<Path, BasicFileAttributes> entry: entries) {
+            long[] shard = shards.remove();
+            if (shard[1] == shardIndex) {
+                selectedFiles.put(entry.getKey(), entry.getValue());
+            }
+            shard[0] += size(entry.getValue()) + FILE_OVERHEAD_BYTES;
+            shards.add(shard);
+        }
+        return selectedFiles;
+    }
+
+    private static long size(BasicFileAttributes attrs) {
+        return attrs != null ? attrs.size() : 0;
+    }
+
+    /**
+     * @return the path with '/' separators, so that it is the same on every platform
+     */
+    private static String stablePath(Path path) {
+        return path.toString().replace('\\', '/');
+    }
+
+}
@@ -0,0 +1,156 @@
+package org.dx42.kibosh.runner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The patterns of a single .gitignore-style ignore file, which apply to the files and directories under
+ * the directory containing it. Supports comments, negation ("!"), directory-only patterns (trailing "/"),
+ * patterns anchored to the directory (containing a "/"), and the "*", "?", "[..]" and "**" wildcards.
+ */
+@Slf4j
+class IgnoreFile {
+
+    private final Path directory;
+    private final List<IgnorePattern> patterns;
+
+    IgnoreFile(Path directory, List<String> lines) {
+        this.directory = directory;
+        this.patterns = new ArrayList<>();
+        for (String line: lines) {
+            IgnorePattern pattern = parse(line);
+            if (pattern != null) {
+                patterns.add(pattern);
+            }
+        }
+    }
+
+    /**
+     * @return the IgnoreFile with the specified name within the directory, or null if there is none
+     */
+    static IgnoreFile load(Path directory, String fileName) {
+        Path file = directory.resolve(fileName);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return new IgnoreFile(directory, Files.readAllLines(file, UTF_8));
+        } catch (IOException e) {
+            log.warn("Unable to read ignore file [" + file + "]", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return TRUE if the path is ignored, FALSE if it is explicitly not ignored (by a negated pattern),
+     *      or null if no pattern applies to it; the last matching pattern wins
+     */
+    Boolean isIgnored(Path path, boolean isDirectory) {
+        Path relativePath = directory.relativize(path);
+        Boolean ignored = null;
+        for (IgnorePattern pattern: patterns) {
+            if ((isDirectory || !pattern.directoryOnly) && pattern.matches(relativePath)) {
+                ignored = !pattern.negated;
+            }
+        }
+        return ignored;
+    }
+
+    private static IgnorePattern parse(String line) {
+        String pattern = stripTrailingSpaces(line);
+        if (pattern.isEmpty() || pattern.startsWith("#")) {
+            return null;
+        }
+        boolean negated = pattern.startsWith("!");
+        if (negated) {
+            pattern = pattern.substring(1);
+        } else if (pattern.startsWith("\\!") || pattern.startsWith("\\#")) {
+            pattern = pattern.substring(1);
+        }
+        boolean directoryOnly = pattern.endsWith("/");
+        if (directoryOnly) {
+            pattern = pattern.substring(0, pattern.length() - 1);
+        }
+        if (pattern.isEmpty()) {
+            return null;
+        }
+
+        // A pattern containing a "/" (other than at the end) is relative to the directory of the ignore file;
+        // otherwise it matches a file or directory name at any depth
+        boolean anchored = pattern.contains("/");
+        if (pattern.startsWith("/")) {
+            pattern = pattern.substring(1);
+        }
+        List<PathMatcher> matchers = new ArrayList<>();
+        for (String variant: zeroDirectoryVariants(pattern)) {
+            matchers.add(globMatcher(variant));
+        }
+        return new IgnorePattern(matchers, anchored, negated, directoryOnly);
+    }
+
+    /**
+     * @return the pattern along with each variant in which any of its leading "**&#47;" or inner "/**&#47;"
+     *      wildcards match zero directories (i.e. are removed), which a glob "**" does not; e.g. "a/**&#47;b"
+     *      also matches "a/b"
+     */
+    private static List<String> zeroDirectoryVariants(String pattern) {
+        List<String> variants = new ArrayList<>();
+        int index = pattern.startsWith("**/") ? 0 : pattern.indexOf("/**/") + 1;
+        if (index == 0 && !pattern.startsWith("**/")) {
+            variants.add(pattern);
+            return variants;
+        }
+        String prefix = pattern.substring(0, index);
+        for (String variant: zeroDirectoryVariants(pattern.substring(index + 3))) {
+            variants.add(prefix + "**/" + variant);
+            variants.add(prefix + variant);
+        }
+        return variants;
+    }
+
+    private static PathMatcher globMatcher(String pattern) {
+        // Braces are not special within ignore files
+        String glob = pattern.replace("{", "\\{").replace("}", "\\}");
+        return FileSystems.getDefault().getPathMatcher("glob:" + glob);
+    }
+
+    private static String stripTrailingSpaces(String line) {
+        int end = line.length();
+        while (end > 0 && Character.isWhitespace(line.charAt(end - 1)) && !(end > 1 && line.charAt(end - 2) == '\\')) {
+            end--;
+        }
+        return line.substring(0, end);
+    }
+
+    @Value
+    private static class IgnorePattern {
+        List<PathMatcher> matchers;
+        boolean anchored;
+        boolean negated;
+        boolean directoryOnly;
+
+        private boolean matches(Path relativePath) {
+            Path path = anchored ? relativePath : relativePath.getFileName();
+            if (path == null) {
+                return false;
+            }
+            for (PathMatcher matcher: matchers) {
+                if (matcher.matches(path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,226 @@
+package org.dx42.kibosh.runner;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.dx42.kibosh.rule.LineRule;
+import org.dx42.kibosh.rule.LiteralMatcher;
+import org.dx42.kibosh.rule.RegexMatcher;
+import org.dx42.kibosh.rule.Rule;
+import org.dx42.kibosh.rule.RuleSet;
+import org.dx42.kibosh.rule.SourceFile;
+import org.dx42.kibosh.rule.SourceFileLoader;
+import org.dx42.kibosh.rule.Violation;
+
+/**
+ * Applies a list of rules to a single file at a time. A KiboshFileScanner holds no per-file
+ * state, and so may be used to scan multiple files concurrently.
+ */
+@Slf4j
+class KiboshFileScanner {
+
+    private static final Comparator<Violation> LINE_ORDER = Comparator
+            .comparingInt(Violation::getLineNumber)
+            .thenComparingInt(Violation::getColumnNumber);
+
+    private final RuleSet ruleSet;
+    private final List<Rule> rules;
+    private final LiteralMatcher literalMatcher;
+    private final RegexMatcher regexMatcher;
+    private final ResultCache resultCache;
+    private final List<KiboshListener> listeners;
+    private final SourceFileLoader loader;
+    private final long largeFileThreshold;
+    private final LargeFileMode largeFileMode;
+    private final int chunkSize;
+    private final int chunkOverlap;
+    private final Executor chunkExecutor;
+    private final int maxChunksInProgress;
+    private final Semaphore fileSemaphore;
+
+    /**
+     * @param chunkExecutor - optional Executor used to apply the rules to the chunks of a large file in parallel
+     * @param maxChunksInProgress - the maximum number of chunks of a file held in memory at once, if chunkExecutor is set
+     * @param maxConcurrentFiles - the maximum number of files scanned at once, e.g. to limit open file handles; or 0 for
+     *      no limit
+     */
+    @Builder(access = AccessLevel.PACKAGE)
+    private KiboshFileScanner(RuleSet ruleSet, ResultCache resultCache, List<KiboshListener> listeners, SourceFileLoader loader,
+            long largeFileThreshold, LargeFileMode largeFileMode, int chunkSize, int chunkOverlap, boolean combineRegularExpressions,
+            Executor chunkExecutor, int maxChunksInProgress, int maxConcurrentFiles) {
+        this.ruleSet = ruleSet;
+        this.rules = ruleSet.getRules();
+        this.literalMatcher = ruleSet.getLiteralMatcher();
+        this.regexMatcher = combineRegularExpressions ? ruleSet.getRegexMatcher() : null;
+        this.resultCache = resultCache;
+        this.listeners = listeners;
+        this.loader = loader;
+        this.largeFileThreshold = largeFileThreshold;
+        this.largeFileMode = largeFileMode;
+        this.chunkSize = chunkSize;
+        this.chunkOverlap = chunkOverlap;
+        this.chunkExecutor = chunkExecutor;
+        this.maxChunksInProgress = Math.max(maxChunksInProgress, 1);
+        this.fileSemaphore = maxConcurrentFiles > 0 ? new Semaphore(maxConcurrentFiles) : null;
+    }
+
+    /**
+     * @return the violations for the file, sorted by line (and column) number
+     */
+    @SneakyThrows
+    List<Violation> scanFile(Path file, BasicFileAttributes attrs) {
+        if (fileSemaphore == null) {
+            return scanFileNow(file, attrs);
+        }
+        fileSemaphore.acquire();
+        try {
+            return scanFileNow(file, attrs);
+        } finally {
+            fileSemaphore.release();
+        }
+    }
+
+    private List<Violation> scanFileNow(Path file, BasicFileAttributes attrs) {
+        List<Rule> applicableRules = getApplicableRules(file);
+        if (applicableRules.isEmpty()) {
+            // Excluded by every rule; do not read the file at all
+            return new ArrayList<>();
+        }
+
+        boolean largeFile = attrs != null && attrs.size() > largeFileThreshold;
+        if (largeFile && largeFileMode == LargeFileMode.SKIP) {
+            log.info("Skipping large file [{}] ({} bytes)", file, attrs.size());
+            return new ArrayList<>();
+        }
+        if (largeFile && largeFileMode == LargeFileMode.CHUNK) {
+            return scanFileInChunks(file, attrs, applicableRules);
+        }
+
+        SourceFile sourceFile = loader.load(file, attrs, literalMatcher, regexMatcher);
+        if (listeners.isEmpty()) {
+            return scanSourceFile(sourceFile, applicableRules);
+        }
+
+        long startTime = System.nanoTime();
+        listeners.forEach(listener -> listener.fileStarted(file));
+        List<Violation> fileViolations = scanSourceFile(sourceFile, applicableRules);
+        long durationNanos = System.nanoTime() - startTime;
+        listeners.forEach(listener -> listener.fileFinished(file, durationNanos, sourceFile.getBytesRead(), fileViolations.size()));
+        return fileViolations;
+    }
+
+    /**
+     * Apply the rules to each chunk of the file in turn or, if there is a chunkExecutor, to several chunks in
+     * parallel. Either way, the violations are the same and in the same order. The results for a chunked file
+     * are not cached.
+     */
+    private List<Violation> scanFileInChunks(Path file, BasicFileAttributes attrs, List<Rule> applicableRules) {
+        long startTime = System.nanoTime();
+        listeners.forEach(listener -> listener.fileStarted(file));
+        List<Violation> violations = new ArrayList<>();
+        Deque<FutureTask<List<Violation>>> chunksInProgress = new ArrayDeque<>();
+        loader.readChunks(file, attrs, literalMatcher, regexMatcher, chunkSize, chunkOverlap, chunk -> {
+            if (chunkExecutor == null) {
+                violations.addAll(scanChunk(chunk, applicableRules));
+                return;
+            }
+            FutureTask<List<Violation>> task = new FutureTask<>(() -> scanChunk(chunk, applicableRules));
+            chunksInProgress.add(task);
+            chunkExecutor.execute(task);
+            if (chunksInProgress.size() >= maxChunksInProgress) {
+                violations.addAll(awaitChunk(chunksInProgress.remove()));
+            }
+        });
+        while (!chunksInProgress.isEmpty()) {
+            violations.addAll(awaitChunk(chunksInProgress.remove()));
+        }
+        violations.sort(LINE_ORDER);
+        long durationNanos = System.nanoTime() - startTime;
+        listeners.forEach(listener -> listener.fileFinished(file, durationNanos, attrs.size(), violations.size()));
+        return violations;
+    }
+
+    private List<Violation> scanChunk(SourceFile chunk, List<Rule> applicableRules) {
+        List<Violation> violations = new ArrayList<>();
+        for (Rule rule: applicableRules) {
+            violations.addAll(listeners.isEmpty() ? ruleSet.applyRule(rule, chunk) : applyRule(rule, chunk));
+        }
+        return violations;
+    }
+
+    /**
+     * Wait for the chunk task to finish, first running it on the calling thread if it has not yet started, so
+     * that a file task never waits for chunk tasks queued behind it on a busy (or single-threaded) executor.
+     */
+    @SneakyThrows
+    private static List<Violation> awaitChunk(FutureTask<List<Violation>> task) {
+        task.run();
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    private List<Violation> scanSourceFile(SourceFile sourceFile, List<Rule> applicableRules) {
+        List<Violation> cachedViolations = resultCache != null ? resultCache.get(sourceFile) : null;
+        if (cachedViolations != null) {
+            return cachedViolations;
+        }
+
+        List<Violation> violations = new ArrayList<>();
+        List<LineRule> lineRules = new ArrayList<>();
+        for (Rule rule: applicableRules) {
+            if (rule instanceof LineRule && listeners.isEmpty()) {
+                lineRules.add((LineRule) rule);
+                continue;
+            }
+            violations.addAll(listeners.isEmpty() ? ruleSet.applyRule(rule, sourceFile) : applyRule(rule, sourceFile));
+        }
+        // A single pass for all of the LineRules (unless timing each rule), after the other rules, so that the lines
+        // are streamed from the file only if no other rule has read it
+        if (!lineRules.isEmpty()) {
+            violations.addAll(LineRule.applyAll(lineRules, sourceFile));
+        }
+        violations.sort(LINE_ORDER);
+        // The violations of an aborted rule are incomplete; e.g. an ERROR may be hidden behind a time limit WARNING
+        if (resultCache != null && !sourceFile.isRuleAborted()) {
+            resultCache.put(sourceFile, violations);
+        }
+        return violations;
+    }
+
+    private List<Violation> applyRule(Rule rule, SourceFile sourceFile) {
+        Path file = sourceFile.getPath();
+        listeners.forEach(listener -> listener.ruleStarted(rule, file));
+        long startTime = System.nanoTime();
+        List<Violation> violations = ruleSet.applyRule(rule, sourceFile);
+        long durationNanos = System.nanoTime() - startTime;
+        listeners.forEach(listener -> listener.ruleFinished(rule, file, durationNanos, violations.size()));
+        return violations;
+    }
+
+    private List<Rule> getApplicableRules(Path file) {
+        List<Rule> applicableRules = new ArrayList<>(rules.size());
+        for (Rule rule: rules) {
+            if (rule.appliesTo(file)) {
+                applicableRules.add(rule);
+            }
+        }
+        return applicableRules;
+    }
+
+}
@@ -1,41 +1,241 @@
 package org.dx42.kibosh.runner;
 
+import java.io.IOException;
 import java.nio.file.FileSystems;
 import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.dx42.kibosh.rule.Rule;
 import org.dx42.kibosh.rule.Violation;
 
+/**
+ * Collects the files to apply the rules to while walking a directory tree. Excluded and ignored
+ * directories are skipped entirely, rather than walked.
+ *
+ * <p>The public constructor instead applies the rules to each matching file as it is visited, and collects
+ * the violations; it is kept for compatibility, and KiboshRunner no longer uses it.
+ */
 @Slf4j
 public class KiboshFileVisitor extends SimpleFileVisitor<Path> {
 
-    private final List<Rule> rules;
+    private static final String GIT_DIRECTORY = ".git";
+
     private final PathMatcher pathMatcher;
+    private final List<PathMatcher> excludeDirectoryMatchers = new ArrayList<>();
+    private final String ignoreFileName;
+    private final List<Rule> rules;
+
+    // The ignore files that apply to the current directory, outermost first; null for directories with none
+    private final List<IgnoreFile> ignoreFiles = new ArrayList<>();
+    private Path baseDirectory;
+    private Path startDirectory;
+
+    /** The matching files (and their attributes), sorted by path. */
+    @Getter(AccessLevel.PACKAGE)
+    private final Map<Path, BasicFileAttributes> files = new TreeMap<>();
+
+    /** The directories that were walked (i.e. not skipped), in the order visited. */
+    @Getter(AccessLevel.PACKAGE)
+    private final List<Path> directories = new ArrayList<>();
 
+    /** The violations found by applying the rules; only for the deprecated constructor. */
     @Getter
     private final List<Violation> violations = new ArrayList<>();
 
+    /**
+     * Apply the rules to each matching file as it is visited.
+     * @deprecated use KiboshRunner, which also honors its other properties
+     */
+    @Deprecated
     public KiboshFileVisitor(List<Rule> rules, String fileNamePattern) {
-        this.rules = rules;
+        this(fileNamePattern, Collections.emptyList(), null, rules);
+    }
+
+    KiboshFileVisitor(String fileNamePattern) {
+        this(fileNamePattern, Collections.emptyList(), null);
+    }
+
+    /**
+     * @param excludeDirectories directory (glob) patterns to skip; a pattern that contains a '/' is matched
+     *      against the whole directory path, otherwise against the directory name
+     * @param ignoreFileName the name of the .gitignore-style ignore files to honor; or null to not use them
+     */
+    KiboshFileVisitor(String fileNamePattern, List<String> excludeDirectories, String ignoreFileName) {
+        this(fileNamePattern, excludeDirectories, ignoreFileName, null);
+    }
 
+    private KiboshFileVisitor(String fileNamePattern, List<String> excludeDirectories, String ignoreFileName,
+            List<Rule> rules) {
+        this.rules = rules;
         // See https://docs.oracle.com/javase/8/docs/api/java/nio/file/FileSystem.html#getPathMatcher-java.lang.String-
         this.pathMatcher = FileSystems.getDefault().getPathMatcher(fileNamePattern);
+        for (String excludeDirectory: excludeDirectories) {
+            PathMatcher globMatcher = FileSystems.getDefault().getPathMatcher("glob:" + excludeDirectory);
+            if (excludeDirectory.contains("/")) {
+                excludeDirectoryMatchers.add(globMatcher);
+            } else {
+                excludeDirectoryMatchers.add(path ->
+                        path.getFileName() != null && globMatcher.matches(path.getFileName()));
+            }
+        }
+        this.ignoreFileName = ignoreFileName;
+    }
+
+    /**
+     * Walk a directory within the base directory (e.g. a new directory, for a KiboshWatcher) with the same
+     * ignore files as a walk of the whole base directory.
+     * @return this
+     */
+    KiboshFileVisitor within(Path baseDirectory) {
+        this.baseDirectory = baseDirectory;
+        return this;
+    }
+
+    @Override
+    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+        if (startDirectory == null) {
+            startDirectory = dir;
+            if (baseDirectory != null && !baseDirectory.equals(dir)) {
+                loadIgnoreFilesWithin(baseDirectory, dir.getParent());
+            } else if (ignoreFileName != null) {
+                loadEnclosingIgnoreFiles(dir);
+            }
+        } else if (isExcludedDirectory(dir)) {
+            log.debug("Skipping directory [{}]", dir);
+            return FileVisitResult.SKIP_SUBTREE;
+        }
+        if (ignoreFileName != null) {
+            ignoreFiles.add(IgnoreFile.load(absolute(dir), ignoreFileName));
+        }
+        directories.add(dir);
+        return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+        if (ignoreFileName != null) {
+            ignoreFiles.remove(ignoreFiles.size() - 1);
+        }
+        return super.postVisitDirectory(dir, e);
     }
 
     @Override
     public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-        if (pathMatcher.matches(file.getFileName())) {
-            rules.forEach(rule -> violations.addAll(rule.applyToFile(file)));
+        if (pathMatcher.matches(file.getFileName()) && !isIgnored(file, false)) {
+            if (rules != null) {
+                rules.forEach(rule -> violations.addAll(rule.applyToFile(file)));
+            } else {
+                files.put(file, attrs);
+            }
         }
         return FileVisitResult.CONTINUE;
     }
 
+    /**
+     * @return true if a walk of the start directory would skip the path: an excluded or ignored directory, or a
+     *      file that is ignored or does not match the file name pattern, including because any of the directories
+     *      between them is excluded or ignored. This is for paths found other than by walking (e.g. a changed file,
+     *      or by a KiboshWatcher), and so must not be called during a walk. The path must be within the start
+     *      directory.
+     */
+    boolean isExcludedWithin(Path startDirectory, Path path, boolean isDirectory) {
+        // The same checks, and the same ignore files, as for a walk from the start directory down to the path
+        try {
+            if (loadIgnoreFilesWithin(startDirectory, path.getParent())) {
+                return true;
+            }
+            if (isDirectory) {
+                return isExcludedDirectory(path);
+            }
+            return !pathMatcher.matches(path.getFileName()) || isIgnored(path, false);
+        } finally {
+            ignoreFiles.clear();
+        }
+    }
+
+    /**
+     * Load the ignore files that a walk of the start directory applies within the directory, which must be the
+     * start directory or within it.
+     * @return true if the walk would skip the directory, because it (or a directory above it) is excluded or ignored
+     */
+    private boolean loadIgnoreFilesWithin(Path startDirectory, Path dir) {
+        if (ignoreFileName != null) {
+            loadEnclosingIgnoreFiles(startDirectory);
+            ignoreFiles.add(IgnoreFile.load(absolute(startDirectory), ignoreFileName));
+        }
+        Path relativePath = startDirectory.relativize(dir);
+        if (relativePath.toString().isEmpty()) {
+            return false;
+        }
+        Path subdir = startDirectory;
+        for (Path name: relativePath) {
+            subdir = subdir.resolve(name);
+            if (isExcludedDirectory(subdir)) {
+                return true;
+            }
+            if (ignoreFileName != null) {
+                ignoreFiles.add(IgnoreFile.load(absolute(subdir), ignoreFileName));
+            }
+        }
+        return false;
+    }
+
+    private boolean isExcludedDirectory(Path dir) {
+        for (PathMatcher matcher: excludeDirectoryMatchers) {
+            if (matcher.matches(dir)) {
+                return true;
+            }
+        }
+        if (ignoreFileName == null) {
+            return false;
+        }
+        return GIT_DIRECTORY.equals(String.valueOf(dir.getFileName())) || isIgnored(dir, true);
+    }
+
+    private boolean isIgnored(Path path, boolean isDirectory) {
+        boolean ignored = false;
+        Path absolutePath = absolute(path);
+        for (IgnoreFile ignoreFile: ignoreFiles) {
+            Boolean result = ignoreFile != null ? ignoreFile.isIgnored(absolutePath, isDirectory) : null;
+            if (result != null) {
+                ignored = result;
+            }
+        }
+        return ignored;
+    }
+
+    /**
+     * Load the ignore files from the directories enclosing the start directory, up to the root of the
+     * git working tree (if any).
+     */
+    private void loadEnclosingIgnoreFiles(Path dir) {
+        List<IgnoreFile> enclosingIgnoreFiles = new ArrayList<>();
+        Path absoluteDir = absolute(dir);
+        if (!Files.exists(absoluteDir.resolve(GIT_DIRECTORY))) {
+            for (Path parent = absoluteDir.getParent(); parent != null; parent = parent.getParent()) {
+                enclosingIgnoreFiles.add(0, IgnoreFile.load(parent, ignoreFileName));
+                if (Files.exists(parent.resolve(GIT_DIRECTORY))) {
+                    ignoreFiles.addAll(enclosingIgnoreFiles);
+                    return;
+                }
+            }
+        }
+    }
+
+    private static Path absolute(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
 }
@@ -0,0 +1,41 @@
+package org.dx42.kibosh.runner;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.dx42.kibosh.rule.Rule;
+
+/**
+ * Receives instrumentation events from a KiboshRunner, e.g. to find the slowest rules or files.
+ * All methods default to doing nothing.
+ *
+ * When the runner scans files concurrently (see KiboshRunner parallelism), the file and rule events
+ * are sent from multiple threads, so implementations must be thread-safe.
+ */
+public interface KiboshListener {
+
+    default void runStarted(List<Rule> rules) {
+    }
+
+    default void fileStarted(Path file) {
+    }
+
+    default void ruleStarted(Rule rule, Path file) {
+    }
+
+    /**
+     * @param violationCount - the number of violations (matches) found by the rule within the file
+     */
+    default void ruleFinished(Rule rule, Path file, long durationNanos, int violationCount) {
+    }
+
+    /**
+     * @param bytesRead - the number of bytes read from the file; zero if it was not read
+     */
+    default void fileFinished(Path file, long durationNanos, long bytesRead, int violationCount) {
+    }
+
+    default void runFinished(long durationNanos, int fileCount) {
+    }
+
+}
@@ -3,11 +3,25 @@ package org.dx42.kibosh.runner;
 import static org.dx42.kibosh.rule.Violation.Severity.*;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import lombok.Builder;
@@ -15,44 +29,391 @@ import lombok.Singular;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.dx42.kibosh.rule.Rule;
+import org.dx42.kibosh.rule.RuleSet;
+import org.dx42.kibosh.rule.SourceFileLoader;
 import org.dx42.kibosh.rule.Violation;
 
 @Slf4j
 @Builder
 public class KiboshRunner {
 
+    private static final int MAX_PENDING_FILES = 1000;
+    private static final String SHARD_INDEX_PROPERTY = "kibosh.shardIndex";
+    private static final String SHARD_COUNT_PROPERTY = "kibosh.shardCount";
+
     @Singular
     private final List<String> baseDirectories;
 
     private final String applyToFileNames;
 
-    @SneakyThrows(IOException.class)
+    /**
+     * Directory (glob) patterns to skip entirely while walking the base directories; e.g. "build", "node_modules"
+     * or "**&#47;generated". A pattern that contains a '/' is matched against the whole directory path.
+     */
+    @Singular
+    private final List<String> excludeDirectories;
+
+    /**
+     * If true, skip the files and directories ignored by .gitignore-style ignore files (see ignoreFileName)
+     * within the base directories, or enclosing them within the same git working tree; and skip ".git"
+     * directories. Defaults to false.
+     */
+    private final boolean useIgnoreFiles;
+
+    /** The name of the ignore files, used if useIgnoreFiles is true. Defaults to ".gitignore". */
+    @Builder.Default
+    private final String ignoreFileName = ".gitignore";
+
+    /**
+     * If not empty, check only these files (e.g. the files changed by a pull request), rather than walking the
+     * base directories; only those that a walk of the base directories would check are checked (i.e. within the
+     * base directories, matching applyToFileNames, and not excluded or ignored).
+     */
+    @Singular
+    private final List<String> changedFiles;
+
+    /** A file listing the changed files to check, one per line; as for changedFiles. */
+    private final String changedFilesListFile;
+
+    /**
+     * A git ref, e.g. "origin/main". If set, check only the files changed since the merge base of that ref and
+     * HEAD (including uncommitted changes), as reported by "git diff --name-only"; as for changedFiles.
+     */
+    private final String changedSinceGitRef;
+
+    /**
+     * The (zero-based) index of the shard of the files to check, out of shardCount shards of roughly equal total
+     * size (see FileSharding); e.g. for parallel test forks. Defaults to the "kibosh.shardIndex" system property,
+     * if set; otherwise 0.
+     */
+    private final Integer shardIndex;
+
+    /** The number of shards. Defaults to the "kibosh.shardCount" system property, if set; otherwise 1 (no sharding). */
+    private final Integer shardCount;
+
+    /**
+     * If set, write the violations for this shard to a report file within this directory, so that the reports of
+     * all of the shards can be checked together using ShardReports.
+     */
+    private final String shardReportDirectory;
+
+    /**
+     * The number of threads used to walk directories and apply rules to files. Defaults to 1,
+     * i.e. scan sequentially on the calling thread. Ignored if executorService is set.
+     */
+    @Builder.Default
+    private final int parallelism = 1;
+
+    /**
+     * If true, walk directories and apply rules to files using a virtual thread for each task (on JDK 21 or later),
+     * which suits I/O-bound scans, e.g. of files on a network filesystem; at most maxOpenFiles files are checked at
+     * once. If virtual threads are not available, falls back to a fixed thread pool of parallelism threads (or one
+     * per processor, if parallelism is 1). Ignored if executorService is set. Defaults to false.
+     */
+    private final boolean virtualThreads;
+
+    /** The maximum number of files checked at once, if virtualThreads is true. Defaults to 256. */
+    @Builder.Default
+    private final int maxOpenFiles = 256;
+
+    /**
+     * An optional ExecutorService used to walk directories and apply rules to files. It is not
+     * shut down by this runner.
+     */
+    private final ExecutorService executorService;
+
+    /**
+     * If true, cache the violations found for each file in resultCacheFile, so that the rules need not be
+     * applied again to files that are unchanged on the next run (with the same rules). Defaults to false.
+     */
+    private final boolean resultCache;
+
+    /** The result cache file, used if resultCache is true. Defaults to "build/kibosh/result-cache.bin". */
+    @Builder.Default
+    private final String resultCacheFile = "build/kibosh/result-cache.bin";
+
+    /**
+     * An optional KiboshSession (e.g. KiboshSession.shared()) that caches the files found by walking the base
+     * directories and the file contents, so that they are shared with other runners that use the same session.
+     */
+    private final KiboshSession session;
+
+    /** Listeners to receive instrumentation (e.g. timing) events; e.g. a TimingSummaryListener. */
+    @Singular
+    private final List<KiboshListener> listeners;
+
+    /**
+     * The maximum number of violations of each severity to keep in memory (and to log and include in the
+     * exception); any more are only counted. Defaults to no limit.
+     */
+    @Builder.Default
+    private final int maxViolations = Integer.MAX_VALUE;
+
+    /**
+     * The maximum number of violations of each severity to keep in memory for each rule; any more are only counted.
+     * Defaults to no limit.
+     */
+    @Builder.Default
+    private final int maxViolationsPerRule = Integer.MAX_VALUE;
+
+    /** Additional sinks to receive every violation as it is found; e.g. a ReportFileViolationSink. */
+    @Singular
+    private final List<ViolationSink> violationSinks;
+
+    /** The charset used to decode the files. Defaults to UTF-8. */
+    @Builder.Default
+    private final Charset charset = SourceFileLoader.DEFAULT.getCharset();
+
+    /** Files of at least this many bytes are memory-mapped rather than read onto the heap. Defaults to 1 MB. */
+    @Builder.Default
+    private final long memoryMapThreshold = SourceFileLoader.DEFAULT.getMemoryMapThreshold();
+
+    /** Files larger than this many bytes are handled according to largeFileMode. Defaults to no limit. */
+    @Builder.Default
+    private final long largeFileThreshold = Long.MAX_VALUE;
+
+    /** How to handle files larger than largeFileThreshold: SCAN, SKIP or CHUNK. Defaults to CHUNK. */
+    @Builder.Default
+    private final LargeFileMode largeFileMode = LargeFileMode.CHUNK;
+
+    /** The maximum number of characters in each chunk, for LargeFileMode.CHUNK. Defaults to 8M. */
+    @Builder.Default
+    private final int chunkSize = 8 * 1024 * 1024;
+
+    /**
+     * The number of characters that each chunk overlaps the next one, for LargeFileMode.CHUNK; a match
+     * that spans a chunk boundary is only found if it is no longer than this. The same number of characters
+     * from the end of the previous chunk is context for anchors and lookbehind. Defaults to 64K.
+     */
+    @Builder.Default
+    private final int chunkOverlap = 64 * 1024;
+
+    /**
+     * If true, match the illegal regular expressions of all TextRules in a single pass over each file, using a
+     * combined Pattern (see RegexMatcher), rather than a separate pass for each one. Defaults to false.
+     */
+    private final boolean combineRegularExpressions;
+
+    /**
+     * If true (and scanning in parallel), start checking the largest files first, so that a few very large files do
+     * not leave the other threads idle at the end of the scan; and also apply the rules to the chunks of each file
+     * larger than largeFileThreshold (for LargeFileMode.CHUNK) in parallel. The violations are the same, and are
+     * still sent to the sinks in path order, but are held in memory until then. Defaults to false.
+     */
+    private final boolean largestFilesFirst;
+
+    /**
+     * For watch(), the time in milliseconds that file events must be quiet before the changed files are checked,
+     * so that a burst of changes is checked once. Defaults to 200.
+     */
+    @Builder.Default
+    private final long watchDebounceMillis = 200;
+
+    /**
+     * Compile the rules (see RuleSet) and apply them to the files.
+     * @throws IllegalArgumentException if any of the rules is invalid, before any file is checked
+     */
     public void applyRules(List<Rule> rules) {
-        KiboshFileVisitor visitor = new KiboshFileVisitor(rules, "glob:" + fileNamePattern());
-        walkFileTree(visitor);
-        checkForViolations(visitor);
+        applyRules(RuleSet.compile(rules));
+    }
+
+    public void applyRules(RuleSet ruleSet) {
+        List<Rule> rules = ruleSet.getRules();
+        long startTime = System.nanoTime();
+        listeners.forEach(listener -> listener.runStarted(rules));
+        ViolationCollector collector = new ViolationCollector(maxViolations, maxViolationsPerRule);
+        List<ViolationSink> sinks = new ArrayList<>(violationSinks);
+        sinks.add(0, collector);
+        int shard = shardIndex != null ? shardIndex : Integer.getInteger(SHARD_INDEX_PROPERTY, 0);
+        int shards = shardCount != null ? shardCount : Integer.getInteger(SHARD_COUNT_PROPERTY, 1);
+        if (shardReportDirectory != null) {
+            sinks.add(new ReportFileViolationSink(ShardReports.reportFile(shardReportDirectory, shard, shards)));
+        }
+        ExecutorService executor = executorService != null ? executorService : createExecutorService();
+        try {
+            Map<Path, BasicFileAttributes> files = FileSharding.select(walkFileTree(executor), shard, shards);
+            if (shards > 1) {
+                log.info("Checking {} files in shard {} of {}", new Object[]{ files.size(), shard, shards });
+            }
+            ResultCache cache = resultCache ? ResultCache.load(Paths.get(resultCacheFile), ruleSet, charset) : null;
+            List<ViolationSink> startedSinks = new ArrayList<>();
+            try {
+                for (ViolationSink sink: sinks) {
+                    sink.start();
+                    startedSinks.add(sink);
+                }
+                if (largestFilesFirst && executor != null) {
+                    scanFilesLargestFirst(files, createFileScanner(ruleSet, cache, executor), executor, sinks);
+                } else {
+                    scanFiles(files, createFileScanner(ruleSet, cache, null), executor, sinks);
+                }
+            } finally {
+                // Only those sinks that started, e.g. so that a report file is closed if a later sink fails to start
+                startedSinks.forEach(ViolationSink::finish);
+            }
+            if (cache != null) {
+                cache.save();
+            }
+            long durationNanos = System.nanoTime() - startTime;
+            listeners.forEach(listener -> listener.runFinished(durationNanos, files.size()));
+            checkForViolations(collector);
+        } finally {
+            if (executor != null && executorService == null) {
+                executor.shutdownNow();
+            }
+        }
     }
 
     public void applyRules(Rule... rules) {
         applyRules(Arrays.asList(rules));
     }
 
-    private void walkFileTree(KiboshFileVisitor visitor) throws IOException {
+    /**
+     * Check the files within the base directories, and then keep checking the files that are created or modified
+     * (on a background thread) until the returned KiboshWatcher is closed. The changes to the violations for each
+     * file, starting with those found by the initial check, are sent to the listener; they do not cause an exception.
+     */
+    @SneakyThrows
+    public KiboshWatcher watch(List<Rule> rules, ViolationChangeListener listener) {
+        KiboshWatcher watcher = new KiboshWatcher(baseDirectories, this::createFileVisitor, createFileScanner(RuleSet.compile(rules), null, null),
+                watchDebounceMillis, listener);
+        try {
+            watcher.start();
+        } catch (IOException | RuntimeException e) {
+            watcher.close();
+            throw e;
+        }
+        return watcher;
+    }
+
+    private KiboshFileScanner createFileScanner(RuleSet ruleSet, ResultCache cache, ExecutorService chunkExecutor) {
+        SourceFileLoader loader = SourceFileLoader.builder()
+                .charset(charset)
+                .memoryMapThreshold(memoryMapThreshold)
+                .cache(session != null ? session.getContentCache() : null)
+                .build();
+        return KiboshFileScanner.builder()
+                .ruleSet(ruleSet)
+                .resultCache(cache)
+                .listeners(listeners)
+                .loader(loader)
+                .largeFileThreshold(largeFileThreshold)
+                .largeFileMode(largeFileMode)
+                .chunkSize(chunkSize)
+                .chunkOverlap(chunkOverlap)
+                .combineRegularExpressions(combineRegularExpressions)
+                .chunkExecutor(chunkExecutor)
+                .maxChunksInProgress(Math.max(parallelism, Runtime.getRuntime().availableProcessors()))
+                .maxConcurrentFiles(virtualThreads && executorService == null ? maxOpenFiles : 0)
+                .build();
+    }
+
+    private ExecutorService createExecutorService() {
+        if (virtualThreads) {
+            ExecutorService executor = VirtualThreads.newExecutorService();
+            if (executor != null) {
+                return executor;
+            }
+            int threadCount = parallelism > 1 ? parallelism : Runtime.getRuntime().availableProcessors();
+            log.info("Virtual threads are not available; using {} platform threads", threadCount);
+            return Executors.newFixedThreadPool(threadCount);
+        }
+        return parallelism > 1 ? Executors.newFixedThreadPool(parallelism) : null;
+    }
+
+    private Map<Path, BasicFileAttributes> walkFileTree(ExecutorService executor) {
+        if (isChangedFilesOnly()) {
+            return findChangedFiles();
+        }
+        List<Future<Map<Path, BasicFileAttributes>>> futures = new ArrayList<>();
         for (String baseDirectory: baseDirectories) {
-            Path startingDir = Paths.get(baseDirectory);
-            Files.walkFileTree(startingDir, visitor);
+            futures.add(submit(executor, () -> walkFileTree(Paths.get(baseDirectory))));
         }
+
+        Map<Path, BasicFileAttributes> files = new TreeMap<>();
+        futures.forEach(future -> files.putAll(getResult(future)));
+        return files;
     }
 
-    private void checkForViolations(KiboshFileVisitor visitor) {
-        List<Violation> warningViolations = getViolationsBySeverity(visitor.getViolations(), WARNING);
-        logViolations(warningViolations, WARNING);
+    private Map<Path, BasicFileAttributes> walkFileTree(Path startingDir) throws IOException {
+        if (session != null) {
+            String walkKey = startingDir + "|" + fileNamePattern() + "|" + excludeDirectories
+                    + "|" + (useIgnoreFiles ? ignoreFileName : null);
+            return session.getFiles(startingDir, walkKey, this::createFileVisitor);
+        }
+        KiboshFileVisitor visitor = createFileVisitor();
+        Files.walkFileTree(startingDir, visitor);
+        return visitor.getFiles();
+    }
 
-        List<Violation> errorViolations = getViolationsBySeverity(visitor.getViolations(), ERROR);
-        logViolations(errorViolations, ERROR);
+    private KiboshFileVisitor createFileVisitor() {
+        return new KiboshFileVisitor("glob:" + fileNamePattern(), excludeDirectories, useIgnoreFiles ? ignoreFileName : null);
+    }
 
-        if (!errorViolations.isEmpty()) {
-            throw new KiboshViolationsException(errorViolations);
+    private boolean isChangedFilesOnly() {
+        return !changedFiles.isEmpty() || changedFilesListFile != null || changedSinceGitRef != null;
+    }
+
+    @SneakyThrows
+    private Map<Path, BasicFileAttributes> findChangedFiles() {
+        List<Path> paths = new ArrayList<>();
+        changedFiles.forEach(file -> paths.add(Paths.get(file)));
+        if (changedFilesListFile != null) {
+            paths.addAll(ChangedFiles.fromListFile(Paths.get(changedFilesListFile)));
+        }
+        if (changedSinceGitRef != null) {
+            paths.addAll(ChangedFiles.fromGitDiff(Paths.get("").toAbsolutePath(), changedSinceGitRef));
+        }
+        Map<Path, BasicFileAttributes> files = ChangedFiles.select(paths, baseDirectories, createFileVisitor());
+        log.info("Checking {} of {} changed files", files.size(), paths.size());
+        return files;
+    }
+
+    private static void scanFiles(Map<Path, BasicFileAttributes> files, KiboshFileScanner scanner, ExecutorService executor,
+            List<ViolationSink> sinks) {
+        // Send the results to the sinks in path order, regardless of the order in which the files are scanned,
+        // and limit the number of files whose results are pending
+        int maxPendingFiles = executor == null ? 1 : MAX_PENDING_FILES;
+        Deque<Future<List<Violation>>> pending = new ArrayDeque<>();
+        for (Map.Entry<Path, BasicFileAttributes> entry: files.entrySet()) {
+            pending.add(submit(executor, () -> scanner.scanFile(entry.getKey(), entry.getValue())));
+            if (pending.size() >= maxPendingFiles) {
+                sendToSinks(getResult(pending.remove()), sinks);
+            }
+        }
+        while (!pending.isEmpty()) {
+            sendToSinks(getResult(pending.remove()), sinks);
+        }
+    }
+
+    private static void scanFilesLargestFirst(Map<Path, BasicFileAttributes> files, KiboshFileScanner scanner,
+            ExecutorService executor, List<ViolationSink> sinks) {
+        List<Map.Entry<Path, BasicFileAttributes>> largestFirst = new ArrayList<>(files.entrySet());
+        largestFirst.sort(Comparator.comparingLong(entry -> entry.getValue() != null ? -entry.getValue().size() : 0));
+        Map<Path, Future<List<Violation>>> futures = new TreeMap<>();
+        for (Map.Entry<Path, BasicFileAttributes> entry: largestFirst) {
+            futures.put(entry.getKey(), executor.submit(() -> scanner.scanFile(entry.getKey(), entry.getValue())));
+        }
+        // Send the results to the sinks in path order, as they would be for a sequential scan
+        futures.values().forEach(future -> sendToSinks(getResult(future), sinks));
+    }
+
+    private static void sendToSinks(List<Violation> violations, List<ViolationSink> sinks) {
+        for (Violation violation: violations) {
+            sinks.forEach(sink -> sink.add(violation));
+        }
+    }
+
+    private void checkForViolations(ViolationCollector collector) {
+        logViolations(collector, WARNING);
+        logViolations(collector, ERROR);
+        if (collector.getViolations().size() < collector.getCount(WARNING) + collector.getCount(ERROR)) {
+            logCountsByRule(collector);
+        }
+
+        int errorCount = collector.getCount(ERROR);
+        if (errorCount > 0) {
+            throw new KiboshViolationsException(collector.getViolations(ERROR), errorCount);
         }
     }
 
@@ -60,17 +421,42 @@ public class KiboshRunner {
         return applyToFileNames == null ? "*.java" : applyToFileNames;
     }
 
-    private static void logViolations(List<Violation> violations, Violation.Severity severity) {
-        if (!violations.isEmpty()) {
+    /**
+     * Submit the task to the executor or, if there is no executor, run it immediately on the calling thread.
+     */
+    @SneakyThrows
+    private static <T> Future<T> submit(ExecutorService executor, Callable<T> task) {
+        return executor != null ? executor.submit(task) : CompletableFuture.completedFuture(task.call());
+    }
+
+    @SneakyThrows
+    private static <T> T getResult(Future<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void logViolations(ViolationCollector collector, Violation.Severity severity) {
+        List<Violation> violations = collector.getViolations(severity);
+        int count = collector.getCount(severity);
+        if (count > 0) {
             String violationsOnePerLine = violations.stream()
                     .map(v -> "- " + v.getMessage())
                     .collect(Collectors.joining("\n    "));
-            log.warn("There were {} violations: \n    {}", violations.size() + " " + severity, violationsOnePerLine);
+            if (count > violations.size()) {
+                violationsOnePerLine += "\n    ... and " + (count - violations.size()) + " more";
+            }
+            log.warn("There were {} violations: \n    {}", count + " " + severity, violationsOnePerLine);
         }
     }
 
-    private static List<Violation> getViolationsBySeverity(List<Violation> violations, Violation.Severity severity) {
-        return violations.stream().filter(v -> v.getSeverity() == severity).collect(Collectors.toList());
+    private static void logCountsByRule(ViolationCollector collector) {
+        String countsByRule = collector.getCountsByRule().entrySet().stream()
+                .map(e -> (e.getKey() == null ? "(none)" : e.getKey().getName()) + "=" + e.getValue())
+                .collect(Collectors.joining(", "));
+        log.warn("Violation counts by rule: {}", countsByRule);
     }
 
 }
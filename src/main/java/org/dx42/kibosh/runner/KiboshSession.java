@@ -0,0 +1,88 @@
+package org.dx42.kibosh.runner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.dx42.kibosh.rule.SourceFileCache;
+
+/**
+ * State shared by the KiboshRunners that use it (see KiboshRunner session), e.g. by several test classes that
+ * check the same base directories with different rules, so that the files are walked and read only once.
+ *
+ * A session caches the files found by walking each base directory (with the same file name pattern, excluded
+ * directories and ignore files), and a bounded cache of file contents (see SourceFileCache). The attributes of
+ * the cached files are read again for each run, so that only files whose size or last-modified time has changed
+ * are read again; but files created after a base directory was walked are not found, unless invalidate() is called.
+ * A KiboshSession is thread-safe.
+ */
+@Slf4j
+public class KiboshSession {
+
+    private static final KiboshSession SHARED = KiboshSession.builder().build();
+
+    private final Map<String, Map<Path, BasicFileAttributes>> walkedFiles = new ConcurrentHashMap<>();
+
+    /** The cache of file contents. */
+    @Getter
+    private final SourceFileCache contentCache;
+
+    /**
+     * @param maxCachedBytes the maximum total size of the cached file contents; defaults to 64 MB
+     */
+    @Builder
+    private KiboshSession(Long maxCachedBytes) {
+        this.contentCache = new SourceFileCache(maxCachedBytes != null ? maxCachedBytes : 64 * 1024 * 1024);
+    }
+
+    /**
+     * @return the session shared by the whole JVM
+     */
+    public static KiboshSession shared() {
+        return SHARED;
+    }
+
+    /**
+     * Discard all cached files and contents, so that the base directories are walked again.
+     */
+    public void invalidate() {
+        walkedFiles.clear();
+        contentCache.clear();
+    }
+
+    /**
+     * @param walkKey identifies the base directory and the configuration of the file visitor
+     * @return the files found by walking the base directory (the first time), with their current attributes
+     */
+    Map<Path, BasicFileAttributes> getFiles(Path baseDirectory, String walkKey, Supplier<KiboshFileVisitor> fileVisitorFactory)
+            throws IOException {
+        Map<Path, BasicFileAttributes> files = walkedFiles.get(walkKey);
+        if (files == null) {
+            KiboshFileVisitor visitor = fileVisitorFactory.get();
+            Files.walkFileTree(baseDirectory, visitor);
+            walkedFiles.put(walkKey, visitor.getFiles());
+            return visitor.getFiles();
+        }
+
+        log.debug("Using the cached files for [{}]", baseDirectory);
+        Map<Path, BasicFileAttributes> currentFiles = new TreeMap<>();
+        for (Path file: files.keySet()) {
+            try {
+                currentFiles.put(file, Files.readAttributes(file, BasicFileAttributes.class));
+            } catch (NoSuchFileException e) {
+                log.debug("File [{}] has been deleted", file);
+            }
+        }
+        return currentFiles;
+    }
+
+}
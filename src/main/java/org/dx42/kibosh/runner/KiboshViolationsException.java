@@ -7,13 +7,37 @@ import java.util.List;
 public class KiboshViolationsException extends RuntimeException {
 
     private final List<Violation> violations;
+    private final int totalCount;
 
     public KiboshViolationsException(List<Violation> violations) {
-        super("Violations: " + violations);
+        this(violations, violations.size());
+    }
+
+    /**
+     * @param violations - the violations; may be limited to a subset of all of the violations
+     * @param totalCount - the total number of violations, including any not in the list
+     */
+    public KiboshViolationsException(List<Violation> violations, int totalCount) {
+        super(message(violations, totalCount));
         this.violations = violations;
+        this.totalCount = totalCount;
     }
 
     public List<Violation> getViolations() {
         return violations;
     }
+
+    /**
+     * @return the total number of violations, which may be more than the number in getViolations()
+     */
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    private static String message(List<Violation> violations, int totalCount) {
+        if (totalCount == violations.size()) {
+            return "Violations: " + violations;
+        }
+        return totalCount + " Violations (showing the first " + violations.size() + "): " + violations;
+    }
 }
@@ -0,0 +1,220 @@
+package org.dx42.kibosh.runner;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import lombok.extern.slf4j.Slf4j;
+import org.dx42.kibosh.rule.Violation;
+
+/**
+ * Keeps re-checking the files within the base directories of a KiboshRunner as they are created,
+ * modified or deleted, using a WatchService; see {@link KiboshRunner#watch}. It keeps the current
+ * violations for each file, and sends the changes to a ViolationChangeListener.
+ *
+ * File events are processed on a background (daemon) thread, once a burst of events has been quiet
+ * for the debounce interval, so that saving many files at once triggers a single re-check of each.
+ */
+@Slf4j
+public class KiboshWatcher implements Closeable {
+
+    private static final List<Violation> NO_VIOLATIONS = Collections.emptyList();
+
+    private final List<String> baseDirectories;
+    private final Supplier<KiboshFileVisitor> fileVisitorFactory;
+    private final KiboshFileScanner scanner;
+    private final long debounceMillis;
+    private final ViolationChangeListener listener;
+    private final WatchService watchService;
+    private final Map<Path, List<Violation>> violationsByFile = new ConcurrentHashMap<>();
+    private final Set<Path> watchedDirectories = new HashSet<>();
+
+    KiboshWatcher(List<String> baseDirectories, Supplier<KiboshFileVisitor> fileVisitorFactory, KiboshFileScanner scanner,
+            long debounceMillis, ViolationChangeListener listener) throws IOException {
+        this.baseDirectories = baseDirectories;
+        this.fileVisitorFactory = fileVisitorFactory;
+        this.scanner = scanner;
+        this.debounceMillis = debounceMillis;
+        this.listener = listener;
+        this.watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Check all of the files within the base directories, and then start watching them for changes.
+     */
+    void start() throws IOException {
+        for (String baseDirectory: baseDirectories) {
+            Path baseDirectoryPath = Paths.get(baseDirectory);
+            checkDirectory(baseDirectoryPath, baseDirectoryPath);
+        }
+        Thread thread = new Thread(this::processEvents, "kibosh-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return a snapshot of the current violations for each file that has any, sorted by path
+     */
+    public Map<Path, List<Violation>> getViolations() {
+        return new TreeMap<>(violationsByFile);
+    }
+
+    /**
+     * Stop watching for changes.
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private void processEvents() {
+        try {
+            while (true) {
+                Set<Path> changedPaths = new TreeSet<>();
+                boolean overflow = addChangedPaths(watchService.take(), changedPaths);
+                WatchKey key;
+                while ((key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+                    overflow |= addChangedPaths(key, changedPaths);
+                }
+                if (overflow) {
+                    log.info("File events were lost; checking all files again");
+                    for (String baseDirectory: baseDirectories) {
+                        Path baseDirectoryPath = Paths.get(baseDirectory);
+                        checkDirectory(baseDirectoryPath, baseDirectoryPath);
+                    }
+                } else {
+                    for (Path path: changedPaths) {
+                        checkPath(path);
+                    }
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            log.debug("Stopped watching for changes");
+        } catch (IOException | RuntimeException e) {
+            log.error("Stopped watching for changes", e);
+        }
+    }
+
+    /**
+     * @return true if any events were lost (overflowed)
+     */
+    private static boolean addChangedPaths(WatchKey key, Set<Path> changedPaths) {
+        boolean overflow = false;
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event: key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                overflow = true;
+            } else {
+                changedPaths.add(dir.resolve((Path) event.context()));
+            }
+        }
+        key.reset();
+        return overflow;
+    }
+
+    private void checkPath(Path path) throws IOException {
+        Path baseDirectory = baseDirectoryOf(path);
+        if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            // Only new directories need to be walked; changes within existing directories have their own events
+            if (!watchedDirectories.contains(path)
+                    && !fileVisitorFactory.get().isExcludedWithin(baseDirectory, path, true)) {
+                checkDirectory(path, baseDirectory);
+            }
+        } else if (Files.isRegularFile(path)) {
+            if (!fileVisitorFactory.get().isExcludedWithin(baseDirectory, path, false)) {
+                checkFile(path, Files.readAttributes(path, BasicFileAttributes.class));
+            }
+        } else {
+            // Deleted; along with everything within it, if it was a directory
+            watchedDirectories.removeIf(dir -> dir.startsWith(path));
+            for (Path file: new ArrayList<>(violationsByFile.keySet())) {
+                if (file.startsWith(path)) {
+                    updateViolations(file, NO_VIOLATIONS);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the base directory that contains the path (which is within a watched directory)
+     */
+    private Path baseDirectoryOf(Path path) {
+        for (String baseDirectory: baseDirectories) {
+            Path baseDirectoryPath = Paths.get(baseDirectory);
+            if (path.startsWith(baseDirectoryPath)) {
+                return baseDirectoryPath;
+            }
+        }
+        throw new IllegalStateException("Not within a base directory: " + path);
+    }
+
+    /**
+     * Walk the directory (the base directory or a directory within it), watch it and its subdirectories for
+     * changes, and check its files.
+     */
+    private void checkDirectory(Path dir, Path baseDirectory) throws IOException {
+        KiboshFileVisitor fileVisitor = fileVisitorFactory.get().within(baseDirectory);
+        Files.walkFileTree(dir, fileVisitor);
+        for (Path subdir: fileVisitor.getDirectories()) {
+            subdir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            watchedDirectories.add(subdir);
+        }
+        for (Map.Entry<Path, BasicFileAttributes> entry: fileVisitor.getFiles().entrySet()) {
+            checkFile(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void checkFile(Path file, BasicFileAttributes attrs) {
+        try {
+            updateViolations(file, scanner.scanFile(file, attrs));
+        } catch (RuntimeException e) {
+            log.warn("Unable to check file [" + file + "]", e);
+        }
+    }
+
+    private void updateViolations(Path file, List<Violation> violations) {
+        List<Violation> previous = violations.isEmpty() ? violationsByFile.remove(file) : violationsByFile.put(file, violations);
+        List<Violation> added = difference(violations, previous != null ? previous : NO_VIOLATIONS);
+        List<Violation> removed = difference(previous != null ? previous : NO_VIOLATIONS, violations);
+        if (!added.isEmpty() || !removed.isEmpty()) {
+            listener.violationsChanged(file, added, removed);
+        }
+    }
+
+    /**
+     * @return the violations in the first list that are not in the second list, counting duplicates
+     */
+    private static List<Violation> difference(List<Violation> violations, List<Violation> otherViolations) {
+        List<Violation> remaining = new ArrayList<>(otherViolations);
+        List<Violation> difference = new ArrayList<>();
+        for (Violation violation: violations) {
+            if (!remaining.remove(violation)) {
+                difference.add(violation);
+            }
+        }
+        return difference;
+    }
+
+}
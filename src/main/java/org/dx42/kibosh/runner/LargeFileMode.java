@@ -0,0 +1,21 @@
+package org.dx42.kibosh.runner;
+
+/**
+ * How KiboshRunner handles files larger than its largeFileThreshold.
+ */
+public enum LargeFileMode {
+
+    /** Scan the whole file at once, the same as any other file. */
+    SCAN,
+
+    /** Skip the file entirely (and log that it was skipped). */
+    SKIP,
+
+    /**
+     * Stream the file in line-aligned chunks (with some overlap between consecutive chunks), so that
+     * only one chunk is in memory at a time. A required string or regular expression is reported as missing
+     * only if it is not found within any of the chunks.
+     */
+    CHUNK
+
+}
@@ -0,0 +1,92 @@
+package org.dx42.kibosh.runner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.dx42.kibosh.rule.Violation;
+
+/**
+ * ViolationSink that writes each violation as a line to a (plain text) report file as it is
+ * found, so that the report size is not limited by memory. The file is overwritten on each run.
+ * Any line breaks (and backslashes) within a message are escaped, so that each violation is
+ * always a single line (see {@link #unescape}).
+ */
+public class ReportFileViolationSink implements ViolationSink {
+
+    private final Path reportFile;
+    private BufferedWriter writer;
+
+    public ReportFileViolationSink(Path reportFile) {
+        this.reportFile = reportFile;
+    }
+
+    @Override
+    public void start() {
+        try {
+            Path parent = reportFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            writer = Files.newBufferedWriter(reportFile, UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void add(Violation violation) {
+        try {
+            writer.write(violation.getSeverity() + " " + escape(violation.getMessage()));
+            writer.newLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void finish() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static String escape(String message) {
+        StringBuilder builder = new StringBuilder(message.length());
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (c == '\\') {
+                builder.append("\\\\");
+            } else if (c == '\n') {
+                builder.append("\\n");
+            } else if (c == '\r') {
+                builder.append("\\r");
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return the original message, for a message written to a report file
+     */
+    static String unescape(String message) {
+        StringBuilder builder = new StringBuilder(message.length());
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (c == '\\' && i + 1 < message.length()) {
+                char next = message.charAt(++i);
+                builder.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+}
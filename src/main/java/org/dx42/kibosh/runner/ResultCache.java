@@ -0,0 +1,281 @@
+package org.dx42.kibosh.runner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.dx42.kibosh.rule.Rule;
+import org.dx42.kibosh.rule.RuleSet;
+import org.dx42.kibosh.rule.SourceFile;
+import org.dx42.kibosh.rule.Violation;
+
+/**
+ * A persistent cache of the violations found for each file by a specific list of rules, so that
+ * unchanged files can skip rule evaluation entirely on the next run.
+ *
+ * A file is considered unchanged if its size and last-modified time are the same as when it was
+ * cached, or else if its contents have the same hash. The whole cache is discarded if the rules
+ * fingerprint or the charset does not match, i.e. if any rule or its configuration has changed.
+ *
+ * The entries for files not checked during a run (e.g. in another shard, or not changed) are kept,
+ * unless the file no longer exists, so runs that check different subsets of files can share the cache file.
+ */
+@Slf4j
+class ResultCache {
+
+    private static final int FORMAT_VERSION = 2;
+
+    private final Path cacheFile;
+    private final List<Rule> rules;
+    private final String rulesFingerprint;
+    private final String charsetName;
+
+    private final Map<String, Entry> previousEntries = new ConcurrentHashMap<>();
+    private final Map<String, Entry> currentEntries = new ConcurrentHashMap<>();
+
+    /**
+     * @return the ResultCache, or null if any of the rules does not provide a fingerprint
+     */
+    static ResultCache load(Path cacheFile, RuleSet ruleSet, Charset charset) {
+        if (ruleSet.getFingerprint() == null) {
+            log.info("Not using result cache; not all rules provide a fingerprint");
+            return null;
+        }
+        ResultCache resultCache = new ResultCache(cacheFile, ruleSet.getRules(), ruleSet.getFingerprint(), charset.name());
+        resultCache.read();
+        return resultCache;
+    }
+
+    private ResultCache(Path cacheFile, List<Rule> rules, String rulesFingerprint, String charsetName) {
+        this.cacheFile = cacheFile;
+        this.rules = rules;
+        this.rulesFingerprint = rulesFingerprint;
+        this.charsetName = charsetName;
+    }
+
+    /**
+     * @return the cached violations for the file, or null if the file has changed or is not cached
+     */
+    List<Violation> get(SourceFile sourceFile) {
+        String key = sourceFile.getPath().toString();
+        Entry entry = previousEntries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        BasicFileAttributes attrs = sourceFile.getAttributes();
+        if (attrs == null || attrs.size() != entry.size || attrs.lastModifiedTime().toMillis() != entry.lastModified) {
+            if (entry.contentHash.isEmpty()) {
+                return null;
+            }
+            String contentHash = hash(sourceFile.getByteBuffer());
+            if (!contentHash.equals(entry.contentHash)) {
+                return null;
+            }
+            entry = new Entry(size(sourceFile), lastModified(sourceFile), contentHash, entry.violations);
+        }
+        currentEntries.put(key, entry);
+        return toViolations(entry.violations);
+    }
+
+    void put(SourceFile sourceFile, List<Violation> violations) {
+        List<CachedViolation> cachedViolations = new ArrayList<>(violations.size());
+        for (Violation violation: violations) {
+            cachedViolations.add(new CachedViolation(indexOfRule(violation.getRule()), violation.getSeverity(),
+                    violation.getLineNumber(), violation.getColumnNumber(), violation.getMessage()));
+        }
+        String contentHash = contentHash(sourceFile);
+        currentEntries.put(sourceFile.getPath().toString(),
+                new Entry(size(sourceFile), lastModified(sourceFile), contentHash, cachedViolations));
+    }
+
+    /**
+     * Write the entries for the files checked during this run, along with the previous entries for the other
+     * files that still exist, to the cache file.
+     */
+    void save() {
+        try {
+            Path parent = cacheFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path tempFile = Files.createTempFile(parent, cacheFile.getFileName().toString(), ".tmp");
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                write(output);
+            }
+            Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Unable to write result cache file [" + cacheFile + "]", e);
+        }
+    }
+
+    private void read() {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            if (input.readInt() != FORMAT_VERSION || !readString(input).equals(rulesFingerprint)
+                    || !readString(input).equals(charsetName)) {
+                log.info("Discarding result cache [{}]; the rules or charset have changed", cacheFile);
+                return;
+            }
+            int entryCount = input.readInt();
+            for (int i = 0; i < entryCount; i++) {
+                String key = readString(input);
+                long size = input.readLong();
+                long lastModified = input.readLong();
+                String contentHash = readString(input);
+                int violationCount = input.readInt();
+                List<CachedViolation> violations = new ArrayList<>(violationCount);
+                for (int v = 0; v < violationCount; v++) {
+                    violations.add(new CachedViolation(input.readInt(), Violation.Severity.valueOf(readString(input)),
+                            input.readInt(), input.readInt(), readString(input)));
+                }
+                previousEntries.put(key, new Entry(size, lastModified, contentHash, violations));
+            }
+        } catch (NoSuchFileException e) {
+            log.debug("No result cache file [{}]", cacheFile);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable result cache file [" + cacheFile + "]", e);
+            previousEntries.clear();
+        }
+    }
+
+    private void write(DataOutputStream output) throws IOException {
+        output.writeInt(FORMAT_VERSION);
+        writeString(output, rulesFingerprint);
+        writeString(output, charsetName);
+        Map<String, Entry> entries = new HashMap<>(currentEntries);
+        previousEntries.forEach((key, entry) -> {
+            if (!entries.containsKey(key) && Files.exists(Paths.get(key))) {
+                entries.put(key, entry);
+            }
+        });
+        output.writeInt(entries.size());
+        for (Map.Entry<String, Entry> mapEntry: entries.entrySet()) {
+            Entry entry = mapEntry.getValue();
+            writeString(output, mapEntry.getKey());
+            output.writeLong(entry.size);
+            output.writeLong(entry.lastModified);
+            writeString(output, entry.contentHash);
+            output.writeInt(entry.violations.size());
+            for (CachedViolation violation: entry.violations) {
+                output.writeInt(violation.ruleIndex);
+                writeString(output, violation.severity.name());
+                output.writeInt(violation.lineNumber);
+                output.writeInt(violation.columnNumber);
+                writeString(output, violation.message);
+            }
+        }
+    }
+
+    private List<Violation> toViolations(List<CachedViolation> cachedViolations) {
+        List<Violation> violations = new ArrayList<>(cachedViolations.size());
+        for (CachedViolation cached: cachedViolations) {
+            violations.add(Violation.builder()
+                    .rule(cached.ruleIndex >= 0 ? rules.get(cached.ruleIndex) : null)
+                    .severity(cached.severity)
+                    .message(cached.message)
+                    .lineNumber(cached.lineNumber)
+                    .columnNumber(cached.columnNumber)
+                    .build());
+        }
+        return violations;
+    }
+
+    private int indexOfRule(Rule rule) {
+        for (int i = 0; i < rules.size(); i++) {
+            if (rules.get(i) == rule) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the hash of the file contents; or an empty string if only part of the file was read (e.g. its lines
+     *      were streamed, or only a prefix was needed), so that the file is not read again just to hash it, and
+     *      the entry is then only valid while the size and last-modified time are unchanged
+     */
+    private static String contentHash(SourceFile sourceFile) {
+        if (!sourceFile.isLoaded() && sourceFile.getBytesRead() > 0) {
+            return "";
+        }
+        return hash(sourceFile.getByteBuffer());
+    }
+
+    /**
+     * @return the hash of the contents, which are read directly from the (possibly memory-mapped) buffer, rather
+     *      than copied onto the heap
+     */
+    private static String hash(ByteBuffer buffer) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            messageDigest.update(buffer.duplicate());
+            byte[] digest = messageDigest.digest();
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b: digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long size(SourceFile sourceFile) {
+        BasicFileAttributes attrs = sourceFile.getAttributes();
+        return attrs != null ? attrs.size() : sourceFile.getByteBuffer().remaining();
+    }
+
+    private static long lastModified(SourceFile sourceFile) {
+        BasicFileAttributes attrs = sourceFile.getAttributes();
+        return attrs != null ? attrs.lastModifiedTime().toMillis() : -1;
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        byte[] bytes = string == null ? new byte[0] : string.getBytes(UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    @Value
+    private static class Entry {
+        long size;
+        long lastModified;
+        String contentHash;
+        List<CachedViolation> violations;
+    }
+
+    @Value
+    private static class CachedViolation {
+        int ruleIndex;
+        Violation.Severity severity;
+        int lineNumber;
+        int columnNumber;
+        String message;
+    }
+
+}
@@ -0,0 +1,86 @@
+package org.dx42.kibosh.runner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.extern.slf4j.Slf4j;
+import org.dx42.kibosh.rule.Violation;
+
+/**
+ * Merges the violation reports written by each shard of a sharded scan (see KiboshRunner shardIndex,
+ * shardCount and shardReportDirectory) into a single pass/fail result; e.g. in a build step that runs
+ * after all of the parallel test forks have finished.
+ */
+@Slf4j
+public class ShardReports {
+
+    private ShardReports() {
+    }
+
+    /**
+     * @return the report file for the specified shard within the report directory
+     */
+    public static Path reportFile(String reportDirectory, int shardIndex, int shardCount) {
+        return Paths.get(reportDirectory, "kibosh-shard-" + shardIndex + "-of-" + shardCount + ".txt");
+    }
+
+    /**
+     * Read the violations from the reports of all of the shards.
+     * @throws IllegalStateException if the report for any shard is missing
+     */
+    public static List<Violation> readViolations(String reportDirectory, int shardCount) {
+        List<Violation> violations = new ArrayList<>();
+        for (int shardIndex = 0; shardIndex < shardCount; shardIndex++) {
+            Path reportFile = reportFile(reportDirectory, shardIndex, shardCount);
+            if (!Files.isRegularFile(reportFile)) {
+                throw new IllegalStateException("Missing report file [" + reportFile + "] for shard " + shardIndex);
+            }
+            try {
+                for (String line: Files.readAllLines(reportFile, UTF_8)) {
+                    violations.add(parseViolation(line));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * Check the reports of all of the shards.
+     * @throws KiboshViolationsException if any shard reported ERROR violations
+     * @throws IllegalStateException if the report for any shard is missing
+     */
+    public static void checkForViolations(String reportDirectory, int shardCount) {
+        List<Violation> errors = new ArrayList<>();
+        for (Violation violation: readViolations(reportDirectory, shardCount)) {
+            if (violation.getSeverity() == Violation.Severity.ERROR) {
+                errors.add(violation);
+            }
+        }
+        log.info("{} shards reported {} ERROR violations", shardCount, errors.size());
+        if (!errors.isEmpty()) {
+            throw new KiboshViolationsException(errors);
+        }
+    }
+
+    /**
+     * Parse a line written by ReportFileViolationSink: the severity, a space, and the (escaped) message.
+     */
+    private static Violation parseViolation(String line) {
+        int space = line.indexOf(' ');
+        String severity = space < 0 ? line : line.substring(0, space);
+        return Violation.builder()
+                .severity(Violation.Severity.valueOf(severity))
+                .message(space < 0 ? "" : ReportFileViolationSink.unescape(line.substring(space + 1)))
+                .build();
+    }
+
+}
@@ -0,0 +1,105 @@
+package org.dx42.kibosh.runner;
+
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import lombok.extern.slf4j.Slf4j;
+import org.dx42.kibosh.rule.Rule;
+
+/**
+ * KiboshListener that accumulates the time spent in each rule and file, and logs the slowest
+ * of each when the run finishes.
+ */
+@Slf4j
+public class TimingSummaryListener implements KiboshListener {
+
+    private static final int DEFAULT_COUNT = 10;
+
+    private final int count;
+    private final Map<Rule, Timing> ruleTimings = new ConcurrentHashMap<>();
+    private final Map<Path, Timing> fileTimings = new ConcurrentHashMap<>();
+    private final LongAdder totalBytesRead = new LongAdder();
+
+    public TimingSummaryListener() {
+        this(DEFAULT_COUNT);
+    }
+
+    /**
+     * @param count - the number of slowest rules and files to log
+     */
+    public TimingSummaryListener(int count) {
+        this.count = count;
+    }
+
+    @Override
+    public void runStarted(List<Rule> rules) {
+        ruleTimings.clear();
+        fileTimings.clear();
+        totalBytesRead.reset();
+    }
+
+    @Override
+    public void ruleFinished(Rule rule, Path file, long durationNanos, int violationCount) {
+        ruleTimings.computeIfAbsent(rule, r -> new Timing()).add(durationNanos, violationCount);
+    }
+
+    @Override
+    public void fileFinished(Path file, long durationNanos, long bytesRead, int violationCount) {
+        fileTimings.computeIfAbsent(file, f -> new Timing()).add(durationNanos, violationCount);
+        totalBytesRead.add(bytesRead);
+    }
+
+    @Override
+    public void runFinished(long durationNanos, int fileCount) {
+        log.info("Kibosh run took {} ms for {} files ({} bytes read)\n  Slowest rules:\n    {}\n  Slowest files:\n    {}",
+                new Object[] { TimeUnit.NANOSECONDS.toMillis(durationNanos), fileCount, totalBytesRead.sum(),
+                        slowest(ruleTimings, Rule::getName), slowest(fileTimings, Path::toString) });
+    }
+
+    /**
+     * @return the total time (in nanoseconds) spent applying the rule, across all files
+     */
+    public long getRuleNanos(Rule rule) {
+        Timing timing = ruleTimings.get(rule);
+        return timing == null ? 0 : timing.nanos.sum();
+    }
+
+    /**
+     * @return the total time (in nanoseconds) spent applying all rules to the file
+     */
+    public long getFileNanos(Path file) {
+        Timing timing = fileTimings.get(file);
+        return timing == null ? 0 : timing.nanos.sum();
+    }
+
+    private <K> String slowest(Map<K, Timing> timings, Function<K, String> nameFunction) {
+        return timings.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<K, Timing> e) -> e.getValue().nanos.sum()).reversed())
+                .limit(count)
+                .map(e -> "- " + nameFunction.apply(e.getKey()) + ": " + e.getValue())
+                .collect(Collectors.joining("\n    "));
+    }
+
+    private static class Timing {
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder matches = new LongAdder();
+
+        private void add(long durationNanos, int matchCount) {
+            nanos.add(durationNanos);
+            matches.add(matchCount);
+        }
+
+        @Override
+        public String toString() {
+            return TimeUnit.NANOSECONDS.toMicros(nanos.sum()) / 1000.0 + " ms, " + matches.sum() + " matches";
+        }
+    }
+
+}
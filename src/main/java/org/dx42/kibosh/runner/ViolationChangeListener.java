@@ -0,0 +1,21 @@
+package org.dx42.kibosh.runner;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.dx42.kibosh.rule.Violation;
+
+/**
+ * Receives the changes to the violations for each file checked by a KiboshWatcher. Called from the
+ * watcher thread (or, for the initial check, from the thread that started the watcher).
+ */
+public interface ViolationChangeListener {
+
+    /**
+     * @param added - the new violations for the file, sorted by line (and column) number
+     * @param removed - the previous violations for the file that no longer occur, e.g. because they were fixed
+     *      or the file was deleted
+     */
+    void violationsChanged(Path file, List<Violation> added, List<Violation> removed);
+
+}
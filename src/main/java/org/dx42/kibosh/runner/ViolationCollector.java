@@ -0,0 +1,97 @@
+package org.dx42.kibosh.runner;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.dx42.kibosh.rule.Rule;
+import org.dx42.kibosh.rule.Violation;
+import org.dx42.kibosh.rule.Violation.Severity;
+
+/**
+ * ViolationSink that keeps the violations in memory, up to a maximum number in total and for
+ * each rule. Beyond those limits, violations are only counted. The limits apply to each severity
+ * separately, so that a flood of WARNING violations does not crowd out the ERROR violations.
+ */
+public class ViolationCollector implements ViolationSink {
+
+    private final int maxViolations;
+    private final int maxViolationsPerRule;
+
+    private final List<Violation> violations = new ArrayList<>();
+    private final Map<Severity, Integer> counts = new EnumMap<>(Severity.class);
+    private final Map<Rule, Integer> countsByRule = new IdentityHashMap<>();
+    private final Map<Severity, Integer> keptCounts = new EnumMap<>(Severity.class);
+    private final Map<Severity, Map<Rule, Integer>> keptCountsByRule = new EnumMap<>(Severity.class);
+
+    public ViolationCollector() {
+        this(Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    public ViolationCollector(int maxViolations, int maxViolationsPerRule) {
+        this.maxViolations = maxViolations;
+        this.maxViolationsPerRule = maxViolationsPerRule;
+    }
+
+    @Override
+    public void start() {
+        violations.clear();
+        counts.clear();
+        countsByRule.clear();
+        keptCounts.clear();
+        keptCountsByRule.clear();
+    }
+
+    @Override
+    public void add(Violation violation) {
+        Rule rule = violation.getRule();
+        Severity severity = violation.getSeverity();
+        counts.merge(severity, 1, Integer::sum);
+        countsByRule.merge(rule, 1, Integer::sum);
+
+        Map<Rule, Integer> keptForSeverityByRule = keptCountsByRule.computeIfAbsent(severity, s -> new IdentityHashMap<>());
+        int keptForRule = keptForSeverityByRule.getOrDefault(rule, 0);
+        if (keptCounts.getOrDefault(severity, 0) < maxViolations && keptForRule < maxViolationsPerRule) {
+            violations.add(violation);
+            keptCounts.merge(severity, 1, Integer::sum);
+            keptForSeverityByRule.put(rule, keptForRule + 1);
+        }
+    }
+
+    /**
+     * @return the violations that were kept, i.e. within the limits
+     */
+    public List<Violation> getViolations() {
+        return violations;
+    }
+
+    /**
+     * @return the violations with the specified severity that were kept, i.e. within the limits
+     */
+    public List<Violation> getViolations(Severity severity) {
+        List<Violation> result = new ArrayList<>();
+        for (Violation violation: violations) {
+            if (violation.getSeverity() == severity) {
+                result.add(violation);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the total number of violations with the specified severity, including any that were not kept
+     */
+    public int getCount(Severity severity) {
+        return counts.getOrDefault(severity, 0);
+    }
+
+    /**
+     * @return the total number of violations for each rule, including any that were not kept
+     */
+    public Map<Rule, Integer> getCountsByRule() {
+        return countsByRule;
+    }
+
+}
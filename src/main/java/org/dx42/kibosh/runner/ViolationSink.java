@@ -0,0 +1,28 @@
+package org.dx42.kibosh.runner;
+
+import org.dx42.kibosh.rule.Violation;
+
+/**
+ * Receives each Violation as soon as it is available during a KiboshRunner run, rather than
+ * after all files have been checked; e.g. to write a report in a streaming way.
+ *
+ * Violations are sent from a single thread, in file path (and line number) order, regardless of
+ * the runner parallelism.
+ */
+public interface ViolationSink {
+
+    /**
+     * Called at the start of each run, before any violations are added.
+     */
+    default void start() {
+    }
+
+    void add(Violation violation);
+
+    /**
+     * Called at the end of each run, after all violations have been added.
+     */
+    default void finish() {
+    }
+
+}
@@ -0,0 +1,49 @@
+package org.dx42.kibosh.runner;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Creates an ExecutorService that runs each task on a new virtual thread, on JDK 21 or later. This library
+ * targets Java 8, so the JDK method is called using reflection.
+ */
+@Slf4j
+class VirtualThreads {
+
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findMethod();
+
+    private VirtualThreads() {
+    }
+
+    static boolean isAvailable() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * @return a new virtual-thread-per-task ExecutorService; or null if virtual threads are not available
+     */
+    static ExecutorService newExecutorService() {
+        if (!isAvailable()) {
+            return null;
+        }
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            log.warn("Unable to create a virtual thread executor", e);
+            return null;
+        }
+    }
+
+    private static Method findMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+}
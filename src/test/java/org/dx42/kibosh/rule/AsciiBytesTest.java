@@ -0,0 +1,80 @@
+package org.dx42.kibosh.rule;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.assertj.core.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.dx42.kibosh.test.AbstractKiboshTest;
+import org.junit.jupiter.api.Test;
+
+class AsciiBytesTest extends AbstractKiboshTest {
+
+    private static final String TEXT = "abc\n\u00e9t\u00e9 abc\n\ud83d\ude00abc";
+
+    @Test
+    void findLiteral_ByteOffsets() {
+        AsciiBytes asciiBytes = asciiBytes(TEXT, UTF_8, null);
+        assertThat(asciiBytes.findLiteral("abc")).containsExactly(0, 10, 18);
+        assertThat(asciiBytes.findLiteral("xyz")).isEmpty();
+        assertThat(asciiBytes.contains("\n")).isTrue();
+        assertThat(asciiBytes.contains("bca")).isFalse();
+    }
+
+    @Test
+    void findLiteral_LiteralMatcher() {
+        LiteralMatcher literalMatcher = new LiteralMatcher(list("abc", "\n"));
+        AsciiBytes asciiBytes = asciiBytes(TEXT, UTF_8, literalMatcher);
+        assertThat(asciiBytes.findLiteral("abc")).containsExactly(0, 10, 18);
+        assertThat(asciiBytes.findLiteral("\n")).containsExactly(3, 13);
+    }
+
+    @Test
+    void getLineNumberAndColumnNumber_Utf8() {
+        AsciiBytes asciiBytes = asciiBytes(TEXT, UTF_8, null);
+        LineIndex lineIndex = new LineIndex(TEXT);
+        int[] charOffsets = { 0, TEXT.indexOf(" abc") + 1, TEXT.lastIndexOf("abc") };
+        int[] byteOffsets = asciiBytes.findLiteral("abc");
+        for (int i = 0; i < byteOffsets.length; i++) {
+            assertThat(asciiBytes.getLineNumber(byteOffsets[i])).isEqualTo(lineIndex.getLineNumber(charOffsets[i]));
+            assertThat(asciiBytes.getColumnNumber(byteOffsets[i])).isEqualTo(lineIndex.getColumnNumber(charOffsets[i]));
+        }
+    }
+
+    @Test
+    void getColumnNumber_SingleByteCharset() {
+        AsciiBytes asciiBytes = asciiBytes("x\n\u00e9t\u00e9 abc", ISO_8859_1, null);
+        assertThat(asciiBytes.findLiteral("abc")).containsExactly(6);
+        assertThat(asciiBytes.getLineNumber(6)).isEqualTo(2);
+        assertThat(asciiBytes.getColumnNumber(6)).isEqualTo(5);
+    }
+
+    @Test
+    void DirectBuffer() {
+        byte[] bytes = TEXT.getBytes(UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        AsciiBytes asciiBytes = new AsciiBytes(buffer, UTF_8, 1, null);
+        assertThat(asciiBytes.findLiteral("abc")).containsExactly(0, 10, 18);
+        assertThat(asciiBytes.toString()).isEqualTo(new String(bytes, ISO_8859_1));
+    }
+
+    @Test
+    void isSupported() {
+        assertThat(AsciiBytes.isSupported(UTF_8)).isTrue();
+        assertThat(AsciiBytes.isSupported(ISO_8859_1)).isTrue();
+        assertThat(AsciiBytes.isSupported(UTF_16)).isFalse();
+    }
+
+    @Test
+    void isAscii() {
+        assertThat(AsciiBytes.isAscii(list("abc", "\t", ""))).isTrue();
+        assertThat(AsciiBytes.isAscii(list("abc", "\u00e9"))).isFalse();
+    }
+
+    private AsciiBytes asciiBytes(String text, Charset charset, LiteralMatcher literalMatcher) {
+        return new AsciiBytes(ByteBuffer.wrap(text.getBytes(charset)), charset, 1, literalMatcher);
+    }
+
+}
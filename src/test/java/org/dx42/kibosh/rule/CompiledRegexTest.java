@@ -0,0 +1,103 @@
+package org.dx42.kibosh.rule;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.List;
+import java.util.Random;
+
+import org.dx42.kibosh.test.AbstractKiboshTest;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class CompiledRegexTest extends AbstractKiboshTest {
+
+    @Nested
+    class ExtractRequiredLiterals {
+
+        @Test
+        void PlainText() {
+            assertRequiredLiterals("abc", "abc");
+        }
+
+        @Test
+        void EscapedCharacters() {
+            assertRequiredLiterals("System\\.out\\.print", "System.out.print");
+            assertRequiredLiterals("a\\tb\\n", "a\tb\n");
+            assertRequiredLiterals("\\n\\s*\\n\\s*\\n", "\n");
+        }
+
+        @Test
+        void Quantifiers() {
+            assertRequiredLiterals("@Deprecated\\s*\\(", "@Deprecated", "(");
+            assertRequiredLiterals("abcd*ef", "abc", "ef");
+            assertRequiredLiterals("abc?de", "ab", "de");
+            assertRequiredLiterals("ab+cd", "ab", "cd");
+            assertRequiredLiterals("ab{2,3}cd", "a", "cd");
+            assertRequiredLiterals("a*?bc", "bc");
+        }
+
+        @Test
+        void WildcardsAndAnchors() {
+            assertRequiredLiterals("begin.*end", "begin", "end");
+            assertRequiredLiterals("^import\\s+java\\.awt$", "import", "java.awt");
+        }
+
+        @Test
+        void GroupsAndCharacterClasses() {
+            assertRequiredLiterals("(\\s*\\n)*x", "x");
+            assertRequiredLiterals("[ \\t]+\\n", "\n");
+            assertRequiredLiterals("foo(?:bar|baz)qux", "foo", "qux");
+            assertRequiredLiterals("a[]x]b", "a", "b");
+            assertRequiredLiterals("new (Date|Random)\\(", "new ", "(");
+        }
+
+        @Test
+        void TopLevelAlternation_NoLiterals() {
+            assertRequiredLiterals("abc|def");
+            assertRequiredLiterals("(abc)|def");
+        }
+
+        @Test
+        void NotUnderstood_StopsParsing() {
+            assertRequiredLiterals("abc(?i)def", "abc");
+            assertRequiredLiterals("abc\\Qx.y\\Edef", "abc");
+            assertRequiredLiterals("ab\\p{Alpha}cd", "ab");
+            assertRequiredLiterals("(a)\\1b");
+        }
+
+        private void assertRequiredLiterals(String regex, String... expected) {
+            List<String> literals = CompiledRegex.extractRequiredLiterals(regex);
+            assertThat(literals).describedAs(regex).containsExactly(expected);
+        }
+    }
+
+    @Test
+    void mightMatch() {
+        CompiledRegex compiledRegex = CompiledRegex.compile("System\\.out\\.print(ln)?");
+        assertThat(compiledRegex.mightMatch("xx System.out.println()")).isTrue();
+        assertThat(compiledRegex.mightMatch("xx System.err.println()")).isFalse();
+
+        CompiledRegex noLiterals = CompiledRegex.compile("\\s+");
+        assertThat(noLiterals.getRequiredLiterals()).isEmpty();
+        assertThat(noLiterals.mightMatch("")).isTrue();
+    }
+
+    @Test
+    void mightMatch_NeverFalseWhenRegexMatches() {
+        String[] regexes = { "ab*c", "a.b", "(ab)+c", "a[bc]+d?", "ab?c{2}", "^ab", "b$", "a\\.b", "[^a]bc" };
+        Random random = new Random(17);
+        for (String regex: regexes) {
+            CompiledRegex compiledRegex = CompiledRegex.compile(regex);
+            for (int n = 0; n < 500; n++) {
+                StringBuilder text = new StringBuilder();
+                for (int i = 0; i < 8; i++) {
+                    text.append("abcd.".charAt(random.nextInt(5)));
+                }
+                if (compiledRegex.getPattern().matcher(text).find()) {
+                    assertThat(compiledRegex.mightMatch(text.toString())).describedAs(regex + " : " + text).isTrue();
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+package org.dx42.kibosh.rule;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.dx42.kibosh.test.AbstractKiboshTest;
+import org.junit.jupiter.api.Test;
+
+class LineIndexTest extends AbstractKiboshTest {
+
+    private static final String TEXT = "abc\n\n  xyz\nend\n";
+
+    private final LineIndex lineIndex = new LineIndex(TEXT);
+
+    @Test
+    void getLineCount() {
+        assertThat(lineIndex.getLineCount()).isEqualTo(5);
+        assertThat(new LineIndex("").getLineCount()).isEqualTo(1);
+        assertThat(new LineIndex("abc").getLineCount()).isEqualTo(1);
+    }
+
+    @Test
+    void getLineNumber() {
+        assertThat(lineIndex.getLineNumber(0)).isEqualTo(1);
+        assertThat(lineIndex.getLineNumber(3)).isEqualTo(1);        // the newline belongs to its line
+        assertThat(lineIndex.getLineNumber(4)).isEqualTo(2);
+        assertThat(lineIndex.getLineNumber(TEXT.indexOf("xyz"))).isEqualTo(3);
+        assertThat(lineIndex.getLineNumber(TEXT.indexOf("end"))).isEqualTo(4);
+        assertThat(lineIndex.getLineNumber(TEXT.length())).isEqualTo(5);
+    }
+
+    @Test
+    void getLineNumber_ManyLines_MatchesNewlineCount() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            builder.append("line ").append(i).append('\n');
+        }
+        String text = builder.toString();
+        LineIndex index = new LineIndex(text);
+        for (int offset = 0; offset < text.length(); offset += 7) {
+            int expected = text.substring(0, offset).split("\n", -1).length;
+            assertThat(index.getLineNumber(offset)).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void getLineNumber_NegativeOffset() {
+        assertThatThrownBy(() -> lineIndex.getLineNumber(-1)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    void getColumnNumber() {
+        assertThat(lineIndex.getColumnNumber(0)).isEqualTo(1);
+        assertThat(lineIndex.getColumnNumber(2)).isEqualTo(3);
+        assertThat(lineIndex.getColumnNumber(4)).isEqualTo(1);
+        assertThat(lineIndex.getColumnNumber(TEXT.indexOf("xyz"))).isEqualTo(3);
+    }
+
+    @Test
+    void getLineStartOffset() {
+        assertThat(lineIndex.getLineStartOffset(1)).isEqualTo(0);
+        assertThat(lineIndex.getLineStartOffset(3)).isEqualTo(5);
+    }
+
+    @Test
+    void FirstLineNumber() {
+        LineIndex chunkIndex = new LineIndex(TEXT, 101);
+        assertThat(chunkIndex.getLineNumber(0)).isEqualTo(101);
+        assertThat(chunkIndex.getLineNumber(TEXT.indexOf("xyz"))).isEqualTo(103);
+        assertThat(chunkIndex.getColumnNumber(TEXT.indexOf("xyz"))).isEqualTo(3);
+        assertThat(chunkIndex.getLineStartOffset(103)).isEqualTo(5);
+    }
+
+}
@@ -0,0 +1,130 @@
+package org.dx42.kibosh.rule;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.dx42.kibosh.test.AbstractKiboshTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LineRuleTest extends AbstractKiboshTest {
+
+    private static final String TEXT = "class A {\r\n\tint a;  \n    String s = \"abcdefghijklmnopqrstuvwxyz\";\n}";
+
+    @TempDir
+    Path tempDir;
+
+    private final LineRule lengthRule = LineRule.builder().name("Length").description("too long").maxLineLength(30).build();
+    private final LineRule whitespaceRule = LineRule.builder()
+            .name("Whitespace")
+            .illegalTrailingWhitespace(true)
+            .illegalTabs(true)
+            .build();
+    private final LineRule stringRule = LineRule.builder().name("Strings").illegalString("a").build();
+
+    @Test
+    void MaxLineLength() {
+        List<Violation> violations = lengthRule.applyToSourceFile(SourceFile.ofText(Paths.get("A.java"), TEXT));
+        assertThat(violations).extracting(Violation::getLineNumber, Violation::getColumnNumber).containsExactly(tuple(3, 31));
+        assertThat(violations.get(0).getMessage())
+                .isEqualTo("Length: \"too long\"; File=.(A.java:3) line length of 44 exceeds the maximum of 30");
+    }
+
+    @Test
+    void TrailingWhitespaceAndTabs() {
+        List<Violation> violations = whitespaceRule.applyToSourceFile(SourceFile.ofText(Paths.get("A.java"), TEXT));
+        assertThat(violations)
+                .extracting(Violation::getLineNumber, Violation::getColumnNumber, Violation::getMessage)
+                .containsExactly(
+                        tuple(2, 8, "Whitespace: \"null\"; File=.(A.java:2) contains trailing whitespace"),
+                        tuple(2, 1, "Whitespace: \"null\"; File=.(A.java:2) contains tab character"));
+    }
+
+    @Test
+    void IllegalStrings() {
+        List<Violation> violations = stringRule.applyToSourceFile(SourceFile.ofText(Paths.get("A.java"), TEXT));
+        assertThat(violations)
+                .extracting(Violation::getLineNumber, Violation::getColumnNumber)
+                .containsExactly(tuple(1, 3), tuple(2, 6), tuple(3, 17));
+    }
+
+    @Test
+    void ApplyAll_StreamsLinesWithoutLoadingFile() throws IOException {
+        Path file = Files.write(tempDir.resolve("A.java"), TEXT.getBytes());
+        SourceFile sourceFile = SourceFile.of(file);
+
+        List<Violation> violations = LineRule.applyAll(list(lengthRule, whitespaceRule, stringRule), sourceFile);
+
+        assertThat(sourceFile.isLoaded()).isFalse();
+        assertThat(sourceFile.getBytesRead()).isEqualTo(TEXT.length());
+        assertThat(violations).extracting(Violation::getLineNumber).containsExactly(1, 2, 2, 2, 3, 3);
+        assertThat(violations).containsExactlyInAnyOrderElementsOf(
+                LineRule.applyAll(list(lengthRule, whitespaceRule, stringRule), SourceFile.ofText(file, TEXT)));
+    }
+
+    @Test
+    void LineTerminators_SameLineNumbersAsTextRule() throws IOException {
+        String text = "a x\r\nb x \r\nc\rx\nd x\r";
+        Path file = Files.write(tempDir.resolve("A.java"), text.getBytes());
+        LineRule rule = LineRule.builder().name("X").illegalString("x").illegalTrailingWhitespace(true).build();
+        TextRule textRule = TextRule.builder().name("X").illegalString("x").build();
+
+        List<Violation> streamed = rule.applyToSourceFile(SourceFile.of(file));
+        assertThat(streamed)
+                .extracting(Violation::getLineNumber, Violation::getColumnNumber)
+                .containsExactly(tuple(1, 3), tuple(2, 4), tuple(2, 3), tuple(3, 3), tuple(4, 3));
+        assertThat(rule.applyToSourceFile(SourceFile.ofText(file, text))).isEqualTo(streamed);
+        assertThat(textRule.applyToSourceFile(SourceFile.ofText(file, text)))
+                .extracting(Violation::getLineNumber, Violation::getColumnNumber)
+                .containsExactly(tuple(1, 3), tuple(2, 3), tuple(3, 3), tuple(4, 3));
+    }
+
+    @Test
+    void EmptyIllegalString_Rejected() {
+        LineRule rule = LineRule.builder().name("Empty").illegalString("").illegalString("a").build();
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> RuleSet.compile(list(rule)))
+                .withMessageContaining("Empty: illegal strings must not be empty");
+        assertThat(rule.applyToSourceFile(SourceFile.ofText(Paths.get("A.java"), TEXT))).hasSize(3);
+    }
+
+    @Test
+    void Chunk_OnlyOwnedLines() {
+        SourceFile chunk = SourceFile.builder()
+                .path(Paths.get("A.java"))
+                .text("x a\nb a\nc a\n")
+                .chunkOwnedLength(8)
+                .firstLineNumber(10)
+                .build();
+        assertThat(stringRule.applyToSourceFile(chunk)).extracting(Violation::getLineNumber).containsExactly(10, 11);
+    }
+
+    @Test
+    void ExcludeFilenames() {
+        LineRule rule = LineRule.builder().name("Strings").illegalString("a").excludeFilename("*.md").build();
+        assertThat(rule.appliesTo(Paths.get("docs/A.md"))).isFalse();
+        assertThat(LineRule.applyAll(list(rule), SourceFile.ofText(Paths.get("docs/A.md"), TEXT))).isEmpty();
+        assertThat(rule.applyToSourceFile(SourceFile.ofText(Paths.get("docs/A.md"), TEXT))).isEmpty();
+    }
+
+    @Test
+    void RuleSet_ValidatesExcludeFilenames() {
+        LineRule rule = LineRule.builder().name("Invalid").excludeFilename("{a").build();
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> RuleSet.compile(list(rule)))
+                .withMessageContaining("Invalid: invalid exclude filename pattern");
+    }
+
+    @Test
+    void getFingerprint() {
+        assertThat(lengthRule.getFingerprint())
+                .isEqualTo(LineRule.builder().name("Length").description("too long").maxLineLength(30).build().getFingerprint())
+                .isNotEqualTo(LineRule.builder().name("Length").description("too long").maxLineLength(31).build().getFingerprint());
+    }
+
+}
@@ -0,0 +1,105 @@
+package org.dx42.kibosh.rule;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.dx42.kibosh.test.AbstractKiboshTest;
+import org.junit.jupiter.api.Test;
+
+class LiteralMatcherTest extends AbstractKiboshTest {
+
+    @Test
+    void findAll_MultipleLiterals() {
+        LiteralMatcher matcher = new LiteralMatcher(list("he", "she", "his", "hers"));
+        Map<String, int[]> result = matcher.findAll("ushers and his");
+        assertThat(result.get("she")).containsExactly(1);
+        assertThat(result.get("he")).containsExactly(2);
+        assertThat(result.get("hers")).containsExactly(2);
+        assertThat(result.get("his")).containsExactly(11);
+    }
+
+    @Test
+    void findAll_SameLiteral_NonOverlapping() {
+        LiteralMatcher matcher = new LiteralMatcher(list("aa", "a"));
+        Map<String, int[]> result = matcher.findAll("aaaaa");
+        assertThat(result.get("aa")).containsExactly(0, 2);
+        assertThat(result.get("a")).containsExactly(0, 1, 2, 3, 4);
+    }
+
+    @Test
+    void findAll_NonAsciiCharacters() {
+        LiteralMatcher matcher = new LiteralMatcher(list("\u00e9t\u00e9", "\t"));
+        Map<String, int[]> result = matcher.findAll("l'\u00e9t\u00e9\tx");
+        assertThat(result.get("\u00e9t\u00e9")).containsExactly(2);
+        assertThat(result.get("\t")).containsExactly(5);
+    }
+
+    @Test
+    void findAll_NoMatches() {
+        LiteralMatcher matcher = new LiteralMatcher(list("abc"));
+        assertThat(matcher.findAll("xyz")).isEmpty();
+        assertThat(matcher.findAll("")).isEmpty();
+    }
+
+    @Test
+    void findAll_SameResultsAsIndexOf() {
+        Random random = new Random(42);
+        List<String> literals = list("ab", "abab", "b", "bba", "aab", "c\n", "\n");
+        LiteralMatcher matcher = new LiteralMatcher(literals);
+        for (int n = 0; n < 200; n++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < 60; i++) {
+                text.append("abc\n".charAt(random.nextInt(4)));
+            }
+            Map<String, int[]> result = matcher.findAll(text);
+            for (String literal: literals) {
+                int[] expected = LiteralMatcher.findAll(text.toString(), literal);
+                int[] actual = result.getOrDefault(literal, new int[0]);
+                assertThat(actual).describedAs(literal + " in " + text).isEqualTo(expected);
+            }
+        }
+    }
+
+    @Test
+    void findAll_IndexOf_EmptyLiteral() {
+        assertThat(LiteralMatcher.findAll("abc", "")).isEmpty();
+    }
+
+    @Test
+    void findMissing() {
+        LiteralMatcher matcher = new LiteralMatcher(list("he", "she", "his", "hers"));
+        assertThat(matcher.findMissing("ushers")).containsExactly("his");
+        assertThat(matcher.findMissing("his hers")).containsExactly("she");
+        assertThat(matcher.findMissing("")).containsExactly("he", "she", "his", "hers");
+        assertThat(new LiteralMatcher(list("")).findMissing("abc")).isEmpty();
+    }
+
+    @Test
+    void contains() {
+        LiteralMatcher matcher = new LiteralMatcher(list("abc", ""));
+        assertThat(matcher.contains("abc")).isTrue();
+        assertThat(matcher.contains("ab")).isFalse();
+        assertThat(matcher.contains("")).isFalse();
+    }
+
+    @Test
+    void forRules() {
+        TextRule rule1 = TextRule.builder().name("R1").illegalString("abc").illegalString("x").build();
+        TextRule rule2 = TextRule.builder().name("R2").illegalString("abc").illegalRegularExpression("y").build();
+        LiteralMatcher matcher = LiteralMatcher.forRules(Arrays.asList(rule1, rule2));
+        assertThat(matcher.contains("abc")).isTrue();
+        assertThat(matcher.contains("x")).isTrue();
+        assertThat(matcher.contains("y")).isFalse();
+    }
+
+    @Test
+    void forRules_NoIllegalStrings() {
+        TextRule rule = TextRule.builder().name("R1").requiredString("abc").build();
+        assertThat(LiteralMatcher.forRules(Arrays.asList(rule))).isNull();
+    }
+
+}
@@ -0,0 +1,126 @@
+package org.dx42.kibosh.rule;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.dx42.kibosh.test.AbstractKiboshTest;
+import org.junit.jupiter.api.Test;
+
+class RegexMatcherTest extends AbstractKiboshTest {
+
+    @Test
+    void findAll_MultipleRegexes() {
+        RegexMatcher matcher = new RegexMatcher(list("System\\.out\\.print", "a+b", "[0-9]{2}"));
+        Map<String, int[]> result = matcher.findAll("aab System.out.println(12345)");
+        assertThat(result.get("System\\.out\\.print")).containsExactly(4);
+        assertThat(result.get("a+b")).containsExactly(0);
+        assertThat(result.get("[0-9]{2}")).containsExactly(23, 25);
+    }
+
+    @Test
+    void findAll_OverlappingMatchesOfDifferentRegexes() {
+        RegexMatcher matcher = new RegexMatcher(list("abc", "bcd", "b"));
+        Map<String, int[]> result = matcher.findAll("abcd bc");
+        assertThat(result.get("abc")).containsExactly(0);
+        assertThat(result.get("bcd")).containsExactly(1);
+        assertThat(result.get("b")).containsExactly(1, 5);
+    }
+
+    @Test
+    void findAll_NoMatches() {
+        RegexMatcher matcher = new RegexMatcher(list("xyz", "\\d+"));
+        assertThat(matcher.findAll("abc")).isEmpty();
+        assertThat(matcher.findAll("")).isEmpty();
+    }
+
+    @Test
+    void findAll_EmbeddedFlags_ScopedToEachRegex() {
+        RegexMatcher matcher = new RegexMatcher(list("(?i)abc", "ABC"));
+        Map<String, int[]> result = matcher.findAll("abc ABC");
+        assertThat(result.get("(?i)abc")).containsExactly(0, 4);
+        assertThat(result.get("ABC")).containsExactly(4);
+    }
+
+    @Test
+    void findAll_SameResultsAsSeparateMatchers() {
+        Random random = new Random(42);
+        List<String> regexes = list("ab", "a+b*", "b?", "(ab)+", "[bc]\\n", "^a", "c$", "(?m)^b", "\\bab", "a.{0,3}c", "b|c");
+        RegexMatcher matcher = new RegexMatcher(regexes);
+        for (int n = 0; n < 200; n++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < 60; i++) {
+                text.append("abc\n ".charAt(random.nextInt(5)));
+            }
+            Map<String, int[]> result = matcher.findAll(text.toString());
+            for (String regex: regexes) {
+                int[] actual = result.getOrDefault(regex, new int[0]);
+                assertThat(actual).describedAs(regex + " in " + text).isEqualTo(findAllSeparately(regex, text.toString()));
+            }
+        }
+    }
+
+    @Test
+    void isCombinable() {
+        assertThat(RegexMatcher.isCombinable("System\\.out")).isTrue();
+        assertThat(RegexMatcher.isCombinable("(?i)abc")).isTrue();
+        assertThat(RegexMatcher.isCombinable("(?:a|b)+")).isTrue();
+        assertThat(RegexMatcher.isCombinable("\\\\1")).isTrue();
+
+        assertThat(RegexMatcher.isCombinable("(a)\\1")).isFalse();
+        assertThat(RegexMatcher.isCombinable("(?<name>a)\\k<name>")).isFalse();
+        assertThat(RegexMatcher.isCombinable("a(?=b)")).isFalse();
+        assertThat(RegexMatcher.isCombinable("a(?!b)")).isFalse();
+        assertThat(RegexMatcher.isCombinable("(?<=a)b")).isFalse();
+        assertThat(RegexMatcher.isCombinable("(?<!a)b")).isFalse();
+        assertThat(RegexMatcher.isCombinable("\\Ga")).isFalse();
+        assertThat(RegexMatcher.isCombinable("(?x)a # comment")).isFalse();
+    }
+
+    @Test
+    void isCombinable_Quoted() {
+        assertThat(RegexMatcher.isCombinable("\\Q(?=a)\\1\\E")).isTrue();
+        assertThat(RegexMatcher.isCombinable("a\\Q.\\E(b)\\1")).isFalse();
+        assertThat(RegexMatcher.isCombinable("x\\Qa.b")).isFalse();
+    }
+
+    @Test
+    void findAll_UnterminatedQuote_NotCombined() {
+        RegexMatcher matcher = new RegexMatcher(list("x\\Qa.b", "y", "\\Q(.\\E"));
+        assertThat(matcher.contains("x\\Qa.b")).isFalse();
+        assertThat(matcher.findAll("xa.b y (.")).containsOnlyKeys("y", "\\Q(.\\E");
+    }
+
+    @Test
+    void contains_NotCombinable() {
+        RegexMatcher matcher = new RegexMatcher(list("abc", "(a)\\1"));
+        assertThat(matcher.contains("abc")).isTrue();
+        assertThat(matcher.contains("(a)\\1")).isFalse();
+    }
+
+    @Test
+    void forRules() {
+        TextRule rule1 = TextRule.builder().illegalRegularExpression("abc").build();
+        TextRule rule2 = TextRule.builder().illegalRegularExpression("abc").illegalRegularExpression("x+").build();
+        RegexMatcher matcher = RegexMatcher.forRules(list(rule1, rule2));
+        assertThat(matcher.contains("abc")).isTrue();
+        assertThat(matcher.contains("x+")).isTrue();
+
+        assertThat(RegexMatcher.forRules(list(TextRule.builder().illegalString("abc").build()))).isNull();
+    }
+
+    private static int[] findAllSeparately(String regex, String text) {
+        List<Integer> offsets = new ArrayList<>();
+        Matcher matcher = Pattern.compile(regex).matcher(text);
+        while (matcher.find()) {
+            offsets.add(matcher.start());
+        }
+        return offsets.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+}
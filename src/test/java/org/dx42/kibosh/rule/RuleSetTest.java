@@ -0,0 +1,111 @@
+package org.dx42.kibosh.rule;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.dx42.kibosh.test.AbstractKiboshTest;
+import org.junit.jupiter.api.Test;
+
+class RuleSetTest extends AbstractKiboshTest {
+
+    private static final Path PATH = Paths.get("src/Abc.java");
+
+    private final TextRule rule1 = TextRule.builder()
+            .name("Rule1")
+            .illegalString("abc")
+            .illegalRegularExpression("a\\d+")
+            .build();
+    private final TextRule rule2 = TextRule.builder()
+            .name("Rule2")
+            .illegalRegularExpression("a\\d+")
+            .requiredRegularExpression("package \\w+")
+            .build();
+
+    @Test
+    void SharedCompiledRegexes() {
+        RuleSet ruleSet = RuleSet.compile(list(rule1, rule2));
+
+        CompiledRegex compiledRegex = ruleSet.getCompiledRegex("a\\d+");
+        assertThat(compiledRegex).isNotNull();
+        assertThat(ruleSet.getCompiledRegex("package \\w+").getPattern().pattern()).isEqualTo("package \\w+");
+        assertThat(ruleSet.getCompiledRegex("other")).isNull();
+        assertThat(ruleSet.getLiteralMatcher().contains("abc")).isTrue();
+        assertThat(ruleSet.getRegexMatcher().contains("a\\d+")).isTrue();
+
+        SourceFile sourceFile = SourceFile.ofText(PATH, "abc a1\n");
+        assertThat(ruleSet.applyRule(rule1, sourceFile)).hasSize(2);
+        assertThat(ruleSet.applyRule(rule2, sourceFile)).hasSize(2);
+        assertThat(rule1.applyToSourceFile(sourceFile)).hasSize(2);
+    }
+
+    @Test
+    void RulesSharedAcrossRuleSets_EachKeepsItsOwnCompiledRegexes() {
+        RuleSet ruleSet1 = RuleSet.compile(list(rule1));
+        RuleSet ruleSet2 = RuleSet.compile(list(rule1, rule2));
+
+        assertThat(ruleSet1.getCompiledRegex("a\\d+")).isNotSameAs(ruleSet2.getCompiledRegex("a\\d+"));
+        SourceFile sourceFile = SourceFile.ofText(PATH, "abc a1\n");
+        assertThat(ruleSet1.applyRule(rule1, sourceFile)).isEqualTo(ruleSet2.applyRule(rule1, sourceFile)).hasSize(2);
+    }
+
+    @Test
+    void IdenticalRegexesCompiledOnce() {
+        Map<String, CompiledRegex> compiledRegexes = new HashMap<>();
+        assertThat(rule1.compile(compiledRegexes)).isEmpty();
+        CompiledRegex compiledRegex = compiledRegexes.get("a\\d+");
+
+        assertThat(rule2.compile(compiledRegexes)).isEmpty();
+        assertThat(compiledRegexes).hasSize(2);
+        assertThat(compiledRegexes.get("a\\d+")).isSameAs(compiledRegex);
+    }
+
+    @Test
+    void InvalidPatterns_AllReported() {
+        TextRule invalidRule = TextRule.builder()
+                .name("Invalid")
+                .illegalRegularExpression("a(b")
+                .requiredRegularExpression("[x")
+                .excludeFilename("{a")
+                .build();
+
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> RuleSet.compile(list(rule1, invalidRule)))
+                .withMessageContaining("Invalid: invalid regular expression /a(b/")
+                .withMessageContaining("Invalid: invalid regular expression /[x/")
+                .withMessageContaining("Invalid: invalid exclude filename pattern");
+    }
+
+    @Test
+    void Rules_Immutable() {
+        RuleSet ruleSet = RuleSet.compile(list(rule1));
+        assertThat(ruleSet.getRules()).containsExactly(rule1);
+        assertThatExceptionOfType(UnsupportedOperationException.class).isThrownBy(() -> ruleSet.getRules().add(rule2));
+    }
+
+    @Test
+    void Fingerprint() {
+        String fingerprint = RuleSet.compile(list(rule1, rule2)).getFingerprint();
+        assertThat(fingerprint)
+                .hasSize(64)
+                .isEqualTo(RuleSet.compile(list(rule1, TextRule.builder()
+                        .name("Rule2")
+                        .illegalRegularExpression("a\\d+")
+                        .requiredRegularExpression("package \\w+")
+                        .build())).getFingerprint())
+                .isNotEqualTo(RuleSet.compile(list(rule1)).getFingerprint())
+                .isNotEqualTo(RuleSet.compile(list(rule2, rule1)).getFingerprint());
+    }
+
+    @Test
+    void Fingerprint_NullIfAnyRuleHasNone() {
+        // Does not override the default getFingerprint()
+        Rule rule = path -> new ArrayList<>();
+        assertThat(RuleSet.compile(list(rule1, rule)).getFingerprint()).isNull();
+    }
+
+}
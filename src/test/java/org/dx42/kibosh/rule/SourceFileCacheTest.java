@@ -0,0 +1,99 @@
+package org.dx42.kibosh.rule;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+import org.dx42.kibosh.test.AbstractKiboshTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SourceFileCacheTest extends AbstractKiboshTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final SourceFileCache cache = new SourceFileCache(10);
+    private final SourceFileLoader loader = SourceFileLoader.builder().cache(cache).build();
+
+    @Test
+    void UnchangedFile_ReadOnce() throws IOException {
+        Path file = write("A.java", "abc");
+
+        assertThat(text(file)).isEqualTo("abc");
+        assertThat(text(file)).isEqualTo("abc");
+        assertThat(cache.getMissCount()).isEqualTo(1);
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(cache.getCachedBytes()).isEqualTo(3);
+    }
+
+    @Test
+    void ChangedFile_ReadAgain() throws IOException {
+        Path file = write("A.java", "abc");
+        assertThat(text(file)).isEqualTo("abc");
+
+        Files.write(file, "abcd".getBytes(UTF_8));
+        assertThat(text(file)).isEqualTo("abcd");
+        assertThat(cache.getMissCount()).isEqualTo(2);
+        assertThat(cache.getCachedBytes()).isEqualTo(4);
+    }
+
+    @Test
+    void NoAttributes_NotCached() throws IOException {
+        Path file = write("A.java", "abc");
+        assertThat(loader.load(file, null, null, null).getText()).isEqualTo("abc");
+        assertThat(cache.getMissCount()).isZero();
+        assertThat(cache.getCachedBytes()).isZero();
+    }
+
+    @Test
+    void LeastRecentlyUsedEvicted() throws IOException {
+        Path fileA = write("A.java", "aaaa");
+        Path fileB = write("B.java", "bbbb");
+        Path fileC = write("C.java", "cccc");
+        Path fileD = write("D.java", "dddddddddddd");
+
+        text(fileA);
+        text(fileB);
+        text(fileA);
+        text(fileC);
+        assertThat(cache.getCachedBytes()).isEqualTo(8);
+
+        text(fileA);
+        text(fileB);
+        assertThat(cache.getHitCount()).isEqualTo(2);
+
+        text(fileD);
+        assertThat(cache.getCachedBytes()).isEqualTo(8);
+    }
+
+    @Test
+    void CachedContentsNotAffectedByReaders() throws IOException {
+        Path file = write("A.java", "abc");
+        ByteBuffer buffer = loader.load(file, attributes(file), null, null).getByteBuffer();
+        buffer.position(2);
+
+        assertThat(text(file)).isEqualTo("abc");
+    }
+
+    private String text(Path file) throws IOException {
+        return loader.load(file, attributes(file), null, null).getText();
+    }
+
+    private Path write(String fileName, String text) throws IOException {
+        Path file = Files.write(tempDir.resolve(fileName), text.getBytes(UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1000000));
+        return file;
+    }
+
+    private static BasicFileAttributes attributes(Path file) throws IOException {
+        return Files.readAttributes(file, BasicFileAttributes.class);
+    }
+
+}
@@ -0,0 +1,162 @@
+package org.dx42.kibosh.rule;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dx42.kibosh.test.AbstractKiboshTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SourceFileLoaderTest extends AbstractKiboshTest {
+
+    private static final String TEXT = "line 1\nline 2 abc\nline 3\nline 4 abcdef\n";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void load_BelowMemoryMapThreshold() throws IOException {
+        Path file = writeFile(TEXT.getBytes(UTF_8));
+        SourceFile sourceFile = SourceFileLoader.DEFAULT.load(file, null, null, null);
+
+        assertThat(sourceFile.getText()).isEqualTo(TEXT);
+        assertThat(sourceFile.getByteBuffer().isDirect()).isFalse();
+        assertThat(sourceFile.getBytesRead()).isEqualTo(TEXT.length());
+    }
+
+    @Test
+    void load_MemoryMapped() throws IOException {
+        Path file = writeFile(TEXT.getBytes(UTF_8));
+        SourceFileLoader loader = SourceFileLoader.builder().memoryMapThreshold(10).build();
+        SourceFile sourceFile = loader.load(file, null, null, null);
+
+        assertThat(sourceFile.getByteBuffer().isDirect()).isTrue();
+        assertThat(sourceFile.getText()).isEqualTo(TEXT);
+        assertThat(sourceFile.getBytes()).isEqualTo(TEXT.getBytes(UTF_8));
+        assertThat(sourceFile.getBytesRead()).isEqualTo(TEXT.length());
+    }
+
+    @Test
+    void load_Charset() throws IOException {
+        String text = "caf\u00e9 \u00fcber";
+        Path file = writeFile(text.getBytes(ISO_8859_1));
+
+        assertThat(SourceFileLoader.builder().charset(ISO_8859_1).build().load(file, null, null, null).getText()).isEqualTo(text);
+        assertThat(SourceFileLoader.DEFAULT.load(file, null, null, null).getText()).isNotEqualTo(text);
+    }
+
+    @Test
+    void readChunks_LineAlignedWithOverlap() throws IOException {
+        Path file = writeFile(TEXT.getBytes(UTF_8));
+        List<SourceFile> chunks = readChunks(file, 16, 5);
+
+        // Each chunk starts with the end of the previous one, as context
+        assertThat(chunks).extracting(SourceFile::getText).containsExactly(
+                "line 1\nline ", "ne 1\nline 2 abc\nline ", " abc\nline 3\nline ", "ne 3\nline 4 abcdef\n");
+        assertThat(chunks).extracting(SourceFile::getOwnedStart).containsExactly(0, 5, 5, 5);
+        assertThat(chunks).extracting(SourceFile::isFirstChunk).containsExactly(true, false, false, false);
+        assertThat(chunks).allMatch(SourceFile::isChunk);
+
+        // Line numbers are relative to the whole file
+        SourceFile lastChunk = chunks.get(3);
+        assertThat(lastChunk.getLineIndex().getLineNumber(5)).isEqualTo(4);
+
+        // Offsets within the overlap belong to the next chunk, and those within the context to the previous one
+        assertThat(chunks.get(0).isOwnedOffset(6)).isTrue();
+        assertThat(chunks.get(0).isOwnedOffset(7)).isFalse();
+        assertThat(chunks.get(1).isOwnedOffset(4)).isFalse();
+        assertThat(chunks.get(1).isOwnedOffset(5)).isTrue();
+    }
+
+    @Test
+    void readChunks_LineLongerThanChunkSize() throws IOException {
+        Path file = writeFile("abcdefghij".getBytes(UTF_8));
+        List<SourceFile> chunks = readChunks(file, 4, 2);
+
+        assertThat(chunks).extracting(SourceFile::getText).containsExactly("abcdef", "cdefghij", "ghij");
+        assertThat(chunks.get(2).getLineIndex().getLineNumber(2)).isEqualTo(1);
+    }
+
+    @Test
+    void readChunks_EmptyFile() throws IOException {
+        Path file = writeFile(new byte[0]);
+        List<SourceFile> chunks = readChunks(file, 4, 2);
+
+        assertThat(chunks).extracting(SourceFile::getText).containsExactly("");
+        assertThat(chunks.get(0).isFirstChunk()).isTrue();
+    }
+
+    @Test
+    void readChunks_TextRuleFindsMatchesOnceAcrossChunkBoundaries() throws IOException {
+        Path file = writeFile(TEXT.getBytes(UTF_8));
+        TextRule rule = TextRule.builder().name("r").illegalString("abc").illegalString("e 3").build();
+
+        List<Violation> violations = new ArrayList<>();
+        SourceFileLoader.DEFAULT.readChunks(file, null, null, null, 9, 4, chunk -> violations.addAll(rule.applyToSourceFile(chunk)));
+
+        assertThat(violations).extracting(Violation::getLineNumber).containsExactlyInAnyOrder(2, 3, 4);
+    }
+
+    @Test
+    void readChunks_TextRuleAnchorsAndLookbehindAtChunkStart() throws IOException {
+        Path file = writeFile(TEXT.getBytes(UTF_8));
+        TextRule rule = TextRule.builder()
+                .name("r")
+                .illegalRegularExpression("\\Aline 2|^line 3")
+                .illegalRegularExpression("(?m)^line 4")
+                .illegalRegularExpression("(?<=abc\n)line")
+                .build();
+        List<Violation> expected = rule.applyToSourceFile(SourceFile.of(file));
+        assertThat(expected).extracting(Violation::getLineNumber).containsExactly(4, 3);
+
+        for (RegexMatcher regexMatcher: list(null, RegexMatcher.forRules(list(rule)))) {
+            List<Violation> violations = new ArrayList<>();
+            SourceFileLoader.DEFAULT.readChunks(file, null, null, regexMatcher, 16, 5,
+                    chunk -> violations.addAll(rule.applyToSourceFile(chunk)));
+            assertThat(violations).containsExactlyInAnyOrderElementsOf(expected);
+        }
+    }
+
+    @Test
+    void readChunks_TextRuleReportsRequiredStringsMissingFromEveryChunk() throws IOException {
+        Path file = writeFile(TEXT.getBytes(UTF_8));
+        TextRule rule = TextRule.builder()
+                .name("r")
+                .requiredString("line 1")
+                .requiredString("line 4")
+                .requiredString("xyz")
+                .requiredRegularExpression("abc\\w+")
+                .requiredRegularExpression("\\d{3}")
+                .build();
+        List<SourceFile> chunks = readChunks(file, 9, 4);
+        assertThat(chunks).hasSizeGreaterThan(2);
+
+        // In any order; e.g. if the chunks are checked in parallel
+        List<Violation> violations = new ArrayList<>();
+        for (int i = chunks.size() - 1; i >= 0; i--) {
+            violations.addAll(rule.applyToSourceFile(chunks.get(i)));
+        }
+
+        assertThat(violations).extracting(Violation::getMessage).hasSize(2).allMatch(message -> message.contains("xyz")
+                || message.contains("\\d{3}"));
+    }
+
+    private List<SourceFile> readChunks(Path file, int chunkSize, int overlap) {
+        List<SourceFile> chunks = new ArrayList<>();
+        SourceFileLoader.DEFAULT.readChunks(file, null, null, null, chunkSize, overlap, chunks::add);
+        return chunks;
+    }
+
+    private Path writeFile(byte[] bytes) throws IOException {
+        Path file = tempDir.resolve("TempFile.txt");
+        Files.write(file, bytes);
+        return file;
+    }
+
+}
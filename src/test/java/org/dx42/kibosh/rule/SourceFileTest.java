@@ -0,0 +1,71 @@
+package org.dx42.kibosh.rule;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.dx42.kibosh.test.AbstractKiboshTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SourceFileTest extends AbstractKiboshTest {
+
+    @Test
+    void of_ReadsContentsOnFirstAccess(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("TempFile.txt");
+        Files.write(file, "abc12345".getBytes());
+
+        SourceFile sourceFile = SourceFile.of(file);
+        assertThat(sourceFile.isLoaded()).isFalse();
+
+        assertThat(sourceFile.getText()).isEqualTo("abc12345");
+        assertThat(sourceFile.isLoaded()).isTrue();
+
+        // Contents are cached; later changes to the file are not seen
+        Files.write(file, "other".getBytes());
+        assertThat(sourceFile.getText()).isEqualTo("abc12345");
+        assertThat(sourceFile.getBytes()).isEqualTo("abc12345".getBytes());
+    }
+
+    @Test
+    void ofText() {
+        Path path = Paths.get("some", "File.java");
+        SourceFile sourceFile = SourceFile.ofText(path, "xyz");
+        assertThat(sourceFile.getPath()).isEqualTo(path);
+        assertThat(sourceFile.isLoaded()).isTrue();
+        assertThat(sourceFile.getText()).isEqualTo("xyz");
+        assertThat(sourceFile.getBytes()).isEqualTo("xyz".getBytes());
+        assertThat(sourceFile.getAttributes()).isNull();
+    }
+
+    @Test
+    void getTextPrefix_ReadsOnlyThePrefix(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("TempFile.txt");
+        StringBuilder text = new StringBuilder("line 1\nline 2\nline 3\n");
+        for (int i = 0; i < 10000; i++) {
+            text.append("more text\n");
+        }
+        Files.write(file, text.toString().getBytes());
+
+        SourceFile sourceFile = SourceFile.of(file);
+        assertThat(sourceFile.getTextPrefix(2, 0)).isEqualTo("line 1\nline 2\n");
+        assertThat(sourceFile.getTextPrefix(0, 10)).isEqualTo("line 1\nlin");
+        assertThat(sourceFile.getTextPrefix(2, 10)).isEqualTo("line 1\nlin");
+        assertThat(sourceFile.isLoaded()).isFalse();
+        assertThat(sourceFile.getBytesRead()).isLessThan(text.length());
+
+        assertThat(sourceFile.getText()).isEqualTo(text.toString());
+        assertThat(sourceFile.getTextPrefix(3, 0)).isEqualTo("line 1\nline 2\nline 3\n");
+    }
+
+    @Test
+    void getTextPrefix_ShortFile() {
+        SourceFile sourceFile = SourceFile.ofText(Paths.get("File.java"), "abc");
+        assertThat(sourceFile.getTextPrefix(5, 0)).isEqualTo("abc");
+        assertThat(sourceFile.getTextPrefix(0, 2)).isEqualTo("ab");
+    }
+
+}
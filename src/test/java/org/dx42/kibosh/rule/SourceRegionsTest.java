@@ -0,0 +1,63 @@
+package org.dx42.kibosh.rule;
+
+import static org.assertj.core.api.Assertions.*;
+import org.dx42.kibosh.rule.SourceRegions.Type;
+
+import org.dx42.kibosh.test.AbstractKiboshTest;
+import org.junit.jupiter.api.Test;
+
+class SourceRegionsTest extends AbstractKiboshTest {
+
+    @Test
+    void CommentsAndLiterals() {
+        String text = "int a; // line \"x\"\nString s = \"a//b\\\"c\"; char c = '\"'; /* block\n 'x' */ int b;";
+        SourceRegions regions = SourceRegions.of(text);
+
+        assertType(regions, text, "int a", Type.CODE);
+        assertType(regions, text, "// line", Type.LINE_COMMENT);
+        assertType(regions, text, "\"x\"", Type.LINE_COMMENT);
+        assertType(regions, text, "String s", Type.CODE);
+        assertType(regions, text, "a//b", Type.STRING);
+        assertType(regions, text, "c\";", Type.STRING);
+        assertType(regions, text, "; char", Type.CODE);
+        assertType(regions, text, "'\"'", Type.STRING);
+        assertType(regions, text, " /*", Type.CODE);
+        assertType(regions, text, "/* block", Type.BLOCK_COMMENT);
+        assertType(regions, text, "'x'", Type.BLOCK_COMMENT);
+        assertType(regions, text, " int b", Type.CODE);
+        assertThat(regions.isCode(text.indexOf("\n"))).isTrue();
+        assertThat(regions.isComment(text.indexOf("// line"))).isTrue();
+        assertThat(regions.isComment(text.indexOf("a//b"))).isFalse();
+    }
+
+    @Test
+    void TextBlock() {
+        String text = "String s = \"\"\"\n    // not a comment \\\"\"\"\n    \"\"\"; // comment";
+        SourceRegions regions = SourceRegions.of(text);
+
+        assertType(regions, text, "// not a comment", Type.TEXT_BLOCK);
+        assertType(regions, text, "; //", Type.CODE);
+        assertType(regions, text, "// comment", Type.LINE_COMMENT);
+    }
+
+    @Test
+    void UnterminatedRegions() {
+        assertThat(SourceRegions.of("a /* b").getType(5)).isEqualTo(Type.BLOCK_COMMENT);
+        String text = "s = \"abc\nint x;";
+        SourceRegions regions = SourceRegions.of(text);
+        assertType(regions, text, "abc", Type.STRING);
+        assertType(regions, text, "int x", Type.CODE);
+    }
+
+    @Test
+    void Empty() {
+        assertThat(SourceRegions.of("").getType(0)).isEqualTo(Type.CODE);
+    }
+
+    private static void assertType(SourceRegions regions, String text, String substring, Type type) {
+        int offset = text.indexOf(substring);
+        assertThat(offset).isGreaterThanOrEqualTo(0);
+        assertThat(regions.getType(offset)).describedAs(substring).isEqualTo(type);
+    }
+
+}
@@ -1,13 +1,17 @@
 package org.dx42.kibosh.rule;
 
 import static org.assertj.core.api.Assertions.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
 import static org.dx42.kibosh.rule.Violation.Severity.*;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.dx42.kibosh.test.AbstractKiboshTest;
 import org.junit.jupiter.api.BeforeEach;
@@ -35,6 +39,72 @@ class TextRuleTest extends AbstractKiboshTest {
             assertThat(rule.applyToFile(PATH)).isEmpty();
         }
 
+        @Test
+        void ApplyToSourceFile_UsesSharedContents() {
+            rule = textRuleBuilder()
+                    .illegalString("abc")
+                    .build();
+            TextRule.readFile = p -> { throw new AssertionError("Should not read the file"); };
+            List<Violation> violations = rule.applyToSourceFile(SourceFile.ofText(PATH, "xx\n  abc"));
+            assertThat(violations).hasSize(1);
+            assertThat(violations.get(0).getLineNumber()).isEqualTo(2);
+            assertThat(violations.get(0).getColumnNumber()).isEqualTo(3);
+        }
+
+        @Test
+        void ApplyToSourceFile_SharedLiteralMatcher(@TempDir Path tempDir) throws IOException {
+            Path file = tempDir.resolve(FILE_NAME);
+            Files.write(file, "abc\n xy abc".getBytes());
+            rule = textRuleBuilder().illegalString("abc").build();
+            TextRule otherRule = textRuleBuilder().illegalString("xy").illegalString("abc").build();
+            LiteralMatcher literalMatcher = LiteralMatcher.forRules(list(rule, otherRule));
+            SourceFile sourceFile = SourceFile.of(file, null, literalMatcher);
+
+            List<Violation> violations = rule.applyToSourceFile(sourceFile);
+            assertThat(violations).extracting(Violation::getLineNumber).containsExactly(1, 2);
+            assertThat(violations).extracting(Violation::getRule).containsOnly(rule);
+
+            List<Violation> otherViolations = otherRule.applyToSourceFile(sourceFile);
+            assertThat(otherViolations).extracting(Violation::getColumnNumber).containsExactly(2, 1, 5);
+        }
+
+        @Test
+        void ApplyToSourceFile_SharedRegexMatcher(@TempDir Path tempDir) throws IOException {
+            Path file = tempDir.resolve(FILE_NAME);
+            Files.write(file, "aa\n b12 aa".getBytes());
+            rule = textRuleBuilder().illegalRegularExpression("(a)\\1").illegalRegularExpression("b\\d+").build();
+            TextRule otherRule = textRuleBuilder().illegalRegularExpression("b\\d+").build();
+            RegexMatcher regexMatcher = RegexMatcher.forRules(list(rule, otherRule));
+            SourceFile sourceFile = SourceFileLoader.DEFAULT.load(file, null, null, regexMatcher);
+
+            List<Violation> violations = rule.applyToSourceFile(sourceFile);
+            assertThat(violations).extracting(Violation::getLineNumber).containsExactly(1, 2, 2);
+            assertThat(violations).extracting(Violation::getColumnNumber).containsExactly(1, 6, 2);
+            assertThat(otherRule.applyToSourceFile(sourceFile)).extracting(Violation::getRule).containsExactly(otherRule);
+        }
+
+        @Test
+        void ApplyToSourceFile_AsciiFastPath_SameViolations(@TempDir Path tempDir) throws IOException {
+            Path file = tempDir.resolve(FILE_NAME);
+            String text = "caf\u00e9 TODO\n\ud83d\ude00 x\tTODO\n";
+            Files.write(file, text.getBytes(UTF_8));
+            TextRule.TextRuleBuilder builder = textRuleBuilder()
+                    .illegalString("TODO")
+                    .illegalString("\t")
+                    .requiredString("x")
+                    .requiredString("missing");
+
+            List<Violation> expected = builder.build().applyToSourceFile(SourceFile.of(file));
+            rule = builder.asciiFastPath(true).build();
+            List<Violation> violations = rule.applyToSourceFile(SourceFile.of(file));
+
+            assertThat(violations).extracting(Violation::getMessage)
+                    .isEqualTo(expected.stream().map(Violation::getMessage).collect(toList()));
+            assertThat(violations).extracting(Violation::getColumnNumber).containsExactly(6, 6, 5, 0);
+            assertThat(violations).extracting(Violation::getColumnNumber)
+                    .isEqualTo(expected.stream().map(Violation::getColumnNumber).collect(toList()));
+        }
+
         @Nested
         class IllegalString {
 
@@ -151,6 +221,49 @@ class TextRuleTest extends AbstractKiboshTest {
             }
         }
 
+        @Nested
+        class RequiredWithinPrefix {
+
+            @Test
+            void WithinLines() {
+                rule = textRuleBuilder()
+                        .requiredString("package")
+                        .requiredString("Copyright")
+                        .requiredRegularExpression("import\\s+java")
+                        .requiredWithinLines(2)
+                        .build();
+                TextRule.readFile = p -> "// Copyright 2026\npackage a.b;\nimport java.util.List;\n";
+                assertViolations(violation("does not contain required regular expression /import\\s+java/ within the first 2 lines", 1));
+            }
+
+            @Test
+            void WithinBytes() {
+                rule = textRuleBuilder()
+                        .requiredString("Copyright")
+                        .requiredString("package")
+                        .requiredWithinBytes(12)
+                        .build();
+                TextRule.readFile = p -> "// Copyright 2026\npackage a.b;\n";
+                assertViolations(violation("does not contain required string \"package\" within the first 12 bytes", 1));
+            }
+
+            @Test
+            void ReadsOnlyThePrefix(@TempDir Path tempDir) throws IOException {
+                Path file = tempDir.resolve(FILE_NAME);
+                StringBuilder text = new StringBuilder("// Copyright\n");
+                for (int i = 0; i < 10000; i++) {
+                    text.append("class X {}\n");
+                }
+                Files.write(file, text.toString().getBytes());
+                rule = textRuleBuilder().requiredString("Copyright").requiredWithinLines(5).build();
+
+                SourceFile sourceFile = SourceFile.of(file);
+                assertThat(rule.applyToSourceFile(sourceFile)).isEmpty();
+                assertThat(sourceFile.isLoaded()).isFalse();
+                assertThat(sourceFile.getBytesRead()).isLessThan(text.length());
+            }
+        }
+
         @Nested
         class RequiredRegularExpression {
 
@@ -208,6 +321,29 @@ class TextRuleTest extends AbstractKiboshTest {
                 assertNoViolation(rule);
             }
 
+            @Test
+            void ExcludedFile_PathGlob_NoViolations() {
+                TextRule rule = textRuleBuilder()
+                        .illegalString("abc")
+                        .excludeFilename("some/*.java")
+                        .build();
+                TextRule.readFile = p -> "abc";
+                assertNoViolation(rule);
+            }
+
+            @Test
+            void AppliesTo() {
+                TextRule rule = textRuleBuilder()
+                        .excludeFilename("**/generated/**")
+                        .excludeFilename("*.txt")
+                        .build();
+                assertThat(rule.appliesTo(Paths.get("src", "generated", "Other.java"))).isFalse();
+                assertThat(rule.appliesTo(Paths.get("src", "main", "generated", "sub", "Other.java"))).isFalse();
+                assertThat(rule.appliesTo(Paths.get("src", "Other.txt"))).isFalse();
+                assertThat(rule.appliesTo(Paths.get("src", "main", "Other.java"))).isTrue();
+                assertThat(rule.appliesTo(Paths.get("src", "generated.java"))).isTrue();
+            }
+
             @Test
             void NotExcludedFile_Violation() {
                 rule = textRuleBuilder()
@@ -220,6 +356,62 @@ class TextRuleTest extends AbstractKiboshTest {
 
         }
 
+        @Nested
+        class RegexTimeLimit {
+
+            private final String catastrophicText = repeat("a", 35) + " y";
+
+            @Test
+            void TimeLimitExceeded_AbortedWithWarning() {
+                rule = textRuleBuilder()
+                        .illegalRegularExpression("(.*a){40}")
+                        .illegalRegularExpression("y")
+                        .regexTimeLimitMillis(50)
+                        .build();
+                TextRule.readFile = p -> catastrophicText;
+
+                long startTime = System.nanoTime();
+                List<Violation> violations = rule.applyToFile(PATH);
+                assertThat(System.nanoTime() - startTime).isLessThan(TimeUnit.SECONDS.toNanos(10));
+
+                assertThat(violations).hasSize(1);
+                Violation violation = violations.get(0);
+                assertThat(violation.getSeverity()).isEqualTo(WARNING);
+                assertThat(violation.getMessage())
+                        .startsWith(NAME + ": \"" + DESCRIPTION + "\"; File=.(" + FILE_NAME + ":1) ")
+                        .contains("regular expression /(.*a){40}/ exceeded the time limit of 50 ms");
+            }
+
+            @Test
+            void RequiredRegularExpression_TimeLimitExceeded() {
+                rule = textRuleBuilder()
+                        .requiredRegularExpression("(.*a){40}")
+                        .regexTimeLimitMillis(50)
+                        .build();
+                TextRule.readFile = p -> catastrophicText;
+                List<Violation> violations = rule.applyToFile(PATH);
+                assertThat(violations).extracting(Violation::getSeverity).containsExactly(WARNING);
+            }
+
+            @Test
+            void WithinTimeLimit() {
+                rule = textRuleBuilder()
+                        .illegalRegularExpression("a+b")
+                        .regexTimeLimitMillis(10000)
+                        .build();
+                TextRule.readFile = p -> "xx aab";
+                assertViolations(violation("a+b", 1));
+            }
+
+            private String repeat(String string, int count) {
+                StringBuilder builder = new StringBuilder();
+                for (int i = 0; i < count; i++) {
+                    builder.append(string);
+                }
+                return builder.toString();
+            }
+        }
+
         @Nested
         class Severity {
 
@@ -236,6 +428,60 @@ class TextRuleTest extends AbstractKiboshTest {
 
         }
 
+        @Nested
+        class Regions {
+
+            private static final String TEXT = "class A {\n"
+                    + "    // TODO: System.out\n"
+                    + "    String s = \"System.out TODO\"; /* System.out\n"
+                    + "       TODO */ System.out.println(s);\n"
+                    + "}\n";
+
+            @Test
+            void OnlyInCode() {
+                rule = textRuleBuilder()
+                        .illegalString("System.out")
+                        .illegalRegularExpression("System\\.out\\.print")
+                        .illegalRegularExpression("(System)\\.out\\.\\w+\\(")
+                        .onlyInCode(true)
+                        .build();
+                TextRule.readFile = p -> TEXT;
+                assertViolations(violation("contains illegal string \"System.out\"", 4),
+                        violation("contains illegal regular expression /System\\.out\\.print/", 4),
+                        violation("contains illegal regular expression /(System)\\.out\\.\\w+\\(/", 4));
+            }
+
+            @Test
+            void OnlyInComments() {
+                rule = textRuleBuilder()
+                        .illegalString("TODO")
+                        .onlyInComments(true)
+                        .build();
+                TextRule.readFile = p -> TEXT;
+                assertViolations(violation("contains illegal string \"TODO\"", 2), violation("contains illegal string \"TODO\"", 4));
+            }
+
+            @Test
+            void NoRegionOption_AllMatches() {
+                rule = textRuleBuilder().illegalString("TODO").build();
+                TextRule.readFile = p -> TEXT;
+                assertThat(rule.applyToFile(PATH)).hasSize(3);
+            }
+
+            @Test
+            void AsciiFastPath_StillFiltered() {
+                rule = textRuleBuilder().illegalString("TODO").onlyInComments(true).asciiFastPath(true).build();
+                SourceFile sourceFile = SourceFile.builder().path(PATH).text(TEXT).build();
+                assertThat(rule.applyToSourceFile(sourceFile)).extracting(Violation::getLineNumber).containsExactly(2, 4);
+            }
+
+            @Test
+            void BothOptions_Invalid() {
+                rule = textRuleBuilder().illegalString("TODO").onlyInCode(true).onlyInComments(true).build();
+                assertThat(rule.compile(new HashMap<>())).containsExactly(NAME + ": onlyInCode and onlyInComments cannot both be true");
+            }
+        }
+
         private TextRule.TextRuleBuilder textRuleBuilder() {
             return TextRule.builder()
                     .name(NAME)
@@ -273,6 +519,20 @@ class TextRuleTest extends AbstractKiboshTest {
 
     }
 
+    @Test
+    void getFingerprint() {
+        TextRule rule = TextRule.builder().name(NAME).illegalString("abc").build();
+        assertThat(rule.getFingerprint())
+                .isEqualTo(TextRule.builder().name(NAME).illegalString("abc").build().getFingerprint())
+                .isNotEqualTo(TextRule.builder().name(NAME).illegalString("abd").build().getFingerprint())
+                .isNotEqualTo(TextRule.builder().name(NAME).illegalString("abc").severity(WARNING).build().getFingerprint())
+                .isNotEqualTo(TextRule.builder().name(NAME).requiredString("abc").build().getFingerprint());
+        assertThat(TextRule.builder().name(NAME).illegalString("a, b").build().getFingerprint())
+                .isNotEqualTo(TextRule.builder().name(NAME).illegalString("a").illegalString("b").build().getFingerprint());
+        assertThat(TextRule.builder().name("a|b").description("c").build().getFingerprint())
+                .isNotEqualTo(TextRule.builder().name("a").description("b|c").build().getFingerprint());
+    }
+
     @Test
     void readFile(@TempDir Path tempDir) throws IOException {
         String contents = "abc12345";
@@ -0,0 +1,127 @@
+package org.dx42.kibosh.runner;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.dx42.kibosh.test.AbstractKiboshTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ChangedFilesTest extends AbstractKiboshTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void FromGitDiff() throws Exception {
+        assumeTrue(git("--version"), "git is not available");
+        Path dir = tempDir.toRealPath();
+        Files.createDirectory(dir.resolve("src"));
+        Files.write(dir.resolve("src/Unchanged.java"), "class Unchanged {}".getBytes());
+        Files.write(dir.resolve("src/Modified.java"), "class Modified {}".getBytes());
+        Files.write(dir.resolve("src/Deleted.java"), "class Deleted {}".getBytes());
+        assertThat(git("init", "-q", dir.toString())).isTrue();
+        commitAll(dir, "first");
+        assertThat(git("-C", dir.toString(), "tag", "base")).isTrue();
+
+        Files.write(dir.resolve("src/Modified.java"), "class Modified { int x; }".getBytes());
+        Files.delete(dir.resolve("src/Deleted.java"));
+        Files.write(dir.resolve("src/Committed.java"), "class Committed {}".getBytes());
+        commitAll(dir, "second");
+        Files.write(dir.resolve("src/Untracked.java"), "class Untracked {}".getBytes());
+
+        List<Path> files = ChangedFiles.fromGitDiff(dir.resolve("src"), "base");
+        assertThat(files).containsExactlyInAnyOrder(dir.resolve("src/Modified.java"), dir.resolve("src/Committed.java"),
+                dir.resolve("src/Untracked.java"));
+    }
+
+    @Test
+    void FromGitDiff_NamesThatGitWouldQuote() throws Exception {
+        assumeTrue(git("--version"), "git is not available");
+        Path dir = tempDir.toRealPath();
+        String tabName = "Tab\tName.java";
+        String quoteName = "Quote\"Name.java";
+        assumeTrue(canCreateFile(dir, tabName) && canCreateFile(dir, quoteName), "file names are not supported");
+        assertThat(git("init", "-q", dir.toString())).isTrue();
+        commitAll(dir, "first");
+        assertThat(git("-C", dir.toString(), "tag", "base")).isTrue();
+
+        Files.write(dir.resolve(tabName), "class TabName { int x; }".getBytes());
+        commitAll(dir, "second");
+        Files.write(dir.resolve(quoteName), "class QuoteName { int x; }".getBytes());
+
+        assertThat(ChangedFiles.fromGitDiff(dir, "base")).containsExactlyInAnyOrder(dir.resolve(tabName), dir.resolve(quoteName));
+    }
+
+    @Test
+    void FromGitDiff_UnknownRef() {
+        assumeTrue(git("--version"), "git is not available");
+        assumeTrue(git("init", "-q", tempDir.toString()));
+        assertThatIllegalStateException().isThrownBy(() -> ChangedFiles.fromGitDiff(tempDir, "no-such-ref"));
+    }
+
+    @Test
+    void Select_KeyedByBaseDirectoryPath() throws IOException {
+        Path file = Files.createFile(tempDir.resolve("A.java"));
+        Files.createFile(tempDir.resolve("B.txt"));
+        String baseDirectory = tempDir.toString() + "/.";
+
+        assertThat(ChangedFiles.select(list(file.toAbsolutePath(), tempDir.resolve("B.txt"), tempDir.resolve("C.java")),
+                list(baseDirectory), new KiboshFileVisitor("glob:*.java")))
+                .containsOnlyKeys(Paths.get(baseDirectory, "A.java"));
+    }
+
+    @Test
+    void Select_ExcludedDirectoriesAndIgnoredFiles() throws IOException {
+        Files.write(tempDir.resolve(".kiboshignore"), "Ignored.java\nbuild/\n".getBytes());
+        Path included = createFile("src/main/A.java");
+        Path ignoredFile = createFile("src/main/Ignored.java");
+        Path ignoredDirectoryFile = createFile("build/out/B.java");
+        Path excludedDirectoryFile = createFile("src/generated/C.java");
+        KiboshFileVisitor fileVisitor = new KiboshFileVisitor("glob:*.java", list("generated"), ".kiboshignore");
+
+        assertThat(ChangedFiles.select(list(included, ignoredFile, ignoredDirectoryFile, excludedDirectoryFile),
+                list(tempDir.toString()), fileVisitor))
+                .containsOnlyKeys(included);
+    }
+
+    private static boolean canCreateFile(Path dir, String name) {
+        try {
+            Files.write(dir.resolve(name), "class A {}".getBytes());
+            return true;
+        } catch (IOException | InvalidPathException e) {
+            return false;
+        }
+    }
+
+    private Path createFile(String path) throws IOException {
+        Path file = tempDir.resolve(path);
+        Files.createDirectories(file.getParent());
+        return Files.createFile(file);
+    }
+
+    private void commitAll(Path dir, String message) {
+        assertThat(git("-C", dir.toString(), "add", "-A")).isTrue();
+        assertThat(git("-C", dir.toString(), "-c", "user.name=test", "-c", "user.email=test@example.com",
+                "-c", "commit.gpgsign=false", "commit", "-q", "-m", message)).isTrue();
+    }
+
+    private static boolean git(String... args) {
+        String[] command = new String[args.length + 1];
+        command[0] = "git";
+        System.arraycopy(args, 0, command, 1, args.length);
+        try {
+            return new ProcessBuilder(command).inheritIO().start().waitFor() == 0;
+        } catch (IOException | InterruptedException e) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+package org.dx42.kibosh.runner;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.dx42.kibosh.test.AbstractKiboshTest;
+import org.junit.jupiter.api.Test;
+
+class FileShardingTest extends AbstractKiboshTest {
+
+    private final Map<Path, BasicFileAttributes> files = new TreeMap<>();
+
+    @Test
+    void ShardsAreDisjointAndComplete() {
+        for (int i = 0; i < 100; i++) {
+            addFile("src/File" + i + ".java", 1000 + i * 37 % 5000);
+        }
+
+        Set<Path> allFiles = new HashSet<>();
+        for (int shard = 0; shard < 3; shard++) {
+            for (Path file: FileSharding.select(files, shard, 3).keySet()) {
+                assertThat(allFiles.add(file)).describedAs("in multiple shards: " + file).isTrue();
+            }
+        }
+        assertThat(allFiles).isEqualTo(files.keySet());
+    }
+
+    @Test
+    void Deterministic() {
+        for (int i = 0; i < 50; i++) {
+            addFile("src/File" + i + ".java", 100);
+        }
+        Map<Path, BasicFileAttributes> shuffled = new HashMap<>(files);
+        assertThat(FileSharding.select(shuffled, 1, 4).keySet()).isEqualTo(FileSharding.select(files, 1, 4).keySet());
+    }
+
+    @Test
+    void BalancedBySize() {
+        addFile("Huge.java", 50_000_000);
+        for (int i = 0; i < 1000; i++) {
+            addFile("src/File" + i + ".java", 3000);
+        }
+
+        Map<Path, BasicFileAttributes> shard0 = FileSharding.select(files, 0, 2);
+        Map<Path, BasicFileAttributes> shard1 = FileSharding.select(files, 1, 2);
+        assertThat(shard0).containsOnlyKeys(Paths.get("Huge.java"));
+        assertThat(shard1).hasSize(1000);
+    }
+
+    @Test
+    void SingleShard_AllFiles() {
+        addFile("A.java", 10);
+        assertThat(FileSharding.select(files, 0, 1)).isSameAs(files);
+    }
+
+    @Test
+    void InvalidShardIndex() {
+        assertThatIllegalArgumentException().isThrownBy(() -> FileSharding.select(files, 2, 2));
+        assertThatIllegalArgumentException().isThrownBy(() -> FileSharding.select(files, -1, 2));
+    }
+
+    private void addFile(String path, long size) {
+        BasicFileAttributes attrs = mock(BasicFileAttributes.class);
+        when(attrs.size()).thenReturn(size);
+        files.put(Paths.get(path), attrs);
+    }
+
+}
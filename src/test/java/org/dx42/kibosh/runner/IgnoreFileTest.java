@@ -0,0 +1,84 @@
+package org.dx42.kibosh.runner;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.dx42.kibosh.test.AbstractKiboshTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class IgnoreFileTest extends AbstractKiboshTest {
+
+    private static final Path DIR = Paths.get("/repo").toAbsolutePath();
+
+    @Test
+    void NamePatterns_MatchAtAnyDepth() {
+        IgnoreFile ignoreFile = new IgnoreFile(DIR, list("# comment", "", "*.class", "build/", "Temp?.java"));
+        assertThat(ignoreFile.isIgnored(path("A.class"), false)).isTrue();
+        assertThat(ignoreFile.isIgnored(path("a/b/A.class"), false)).isTrue();
+        assertThat(ignoreFile.isIgnored(path("a/build"), true)).isTrue();
+        assertThat(ignoreFile.isIgnored(path("a/build"), false)).isNull();
+        assertThat(ignoreFile.isIgnored(path("x/Temp1.java"), false)).isTrue();
+        assertThat(ignoreFile.isIgnored(path("x/Temp12.java"), false)).isNull();
+        assertThat(ignoreFile.isIgnored(path("A.java"), false)).isNull();
+    }
+
+    @Test
+    void AnchoredPatterns() {
+        IgnoreFile ignoreFile = new IgnoreFile(DIR, list("/out", "src/generated/", "docs/*.md", "**/tmp/*.java", "logs/**"));
+        assertThat(ignoreFile.isIgnored(path("out"), true)).isTrue();
+        assertThat(ignoreFile.isIgnored(path("a/out"), true)).isNull();
+        assertThat(ignoreFile.isIgnored(path("src/generated"), true)).isTrue();
+        assertThat(ignoreFile.isIgnored(path("a/src/generated"), true)).isNull();
+        assertThat(ignoreFile.isIgnored(path("docs/a.md"), false)).isTrue();
+        assertThat(ignoreFile.isIgnored(path("docs/x/a.md"), false)).isNull();
+        assertThat(ignoreFile.isIgnored(path("tmp/A.java"), false)).isTrue();
+        assertThat(ignoreFile.isIgnored(path("a/b/tmp/A.java"), false)).isTrue();
+        assertThat(ignoreFile.isIgnored(path("logs/a/b.java"), false)).isTrue();
+    }
+
+    @Test
+    void DoubleAsterisk_MatchesZeroDirectories() {
+        IgnoreFile ignoreFile = new IgnoreFile(DIR, list("a/**/b", "**/x/**/y.java"));
+        assertThat(ignoreFile.isIgnored(path("a/b"), false)).isTrue();
+        assertThat(ignoreFile.isIgnored(path("a/c/b"), false)).isTrue();
+        assertThat(ignoreFile.isIgnored(path("a/c/d/b"), true)).isTrue();
+        assertThat(ignoreFile.isIgnored(path("c/a/b"), false)).isNull();
+        assertThat(ignoreFile.isIgnored(path("x/y.java"), false)).isTrue();
+        assertThat(ignoreFile.isIgnored(path("c/x/d/y.java"), false)).isTrue();
+        assertThat(ignoreFile.isIgnored(path("x/d/e/z.java"), false)).isNull();
+    }
+
+    @Test
+    void Negation_LastMatchWins() {
+        IgnoreFile ignoreFile = new IgnoreFile(DIR, list("*.java", "!Keep.java", "\\!Bang.java"));
+        assertThat(ignoreFile.isIgnored(path("a/Other.java"), false)).isTrue();
+        assertThat(ignoreFile.isIgnored(path("a/Keep.java"), false)).isFalse();
+        assertThat(ignoreFile.isIgnored(path("!Bang.java"), false)).isTrue();
+    }
+
+    @Test
+    void BracesAreLiteral() {
+        IgnoreFile ignoreFile = new IgnoreFile(DIR, list("{a,b}.txt"));
+        assertThat(ignoreFile.isIgnored(path("{a,b}.txt"), false)).isTrue();
+        assertThat(ignoreFile.isIgnored(path("a.txt"), false)).isNull();
+    }
+
+    @Test
+    void load(@TempDir Path tempDir) throws IOException {
+        assertThat(IgnoreFile.load(tempDir, ".gitignore")).isNull();
+
+        Files.write(tempDir.resolve(".gitignore"), "*.tmp\n".getBytes());
+        IgnoreFile ignoreFile = IgnoreFile.load(tempDir, ".gitignore");
+        assertThat(ignoreFile.isIgnored(tempDir.resolve("a.tmp"), false)).isTrue();
+    }
+
+    private static Path path(String relativePath) {
+        return DIR.resolve(relativePath);
+    }
+
+}
@@ -0,0 +1,39 @@
+package org.dx42.kibosh.runner;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.dx42.kibosh.rule.Rule;
+import org.dx42.kibosh.rule.Violation;
+import org.dx42.kibosh.test.AbstractKiboshTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class KiboshFileVisitorTest extends AbstractKiboshTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void RulesConstructor_AppliesRulesToMatchingFiles() throws IOException {
+        Files.write(tempDir.resolve("A.java"), "class A { // TODO }".getBytes());
+        Files.write(tempDir.resolve("B.txt"), "TODO".getBytes());
+        Path file = tempDir.resolve("A.java");
+        Violation violation = Violation.builder().message("m1").build();
+        Rule rule = mock(Rule.class);
+        when(rule.applyToFile(file)).thenReturn(list(violation));
+
+        KiboshFileVisitor visitor = new KiboshFileVisitor(list(rule), "glob:*.java");
+        Files.walkFileTree(tempDir, visitor);
+
+        assertThat(visitor.getViolations()).containsExactly(violation);
+        verify(rule).applyToFile(file);
+        verifyNoMoreInteractions(rule);
+    }
+
+}
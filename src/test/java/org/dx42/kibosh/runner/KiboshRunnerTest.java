@@ -5,18 +5,28 @@ import static org.dx42.kibosh.rule.Violation.Severity.*;
 import static org.mockito.Mockito.*;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+import org.dx42.kibosh.rule.LineRule;
 import org.dx42.kibosh.rule.Rule;
+import org.dx42.kibosh.rule.SourceFile;
+import org.dx42.kibosh.rule.TextRule;
 import org.dx42.kibosh.rule.Violation;
 import org.dx42.kibosh.test.AbstractKiboshTest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
 
 class KiboshRunnerTest extends AbstractKiboshTest {
 
@@ -30,8 +40,8 @@ class KiboshRunnerTest extends AbstractKiboshTest {
     private KiboshRunner kiboshRunner;
     private String tempDir;
     private Path filePath1, filePath2, filePath3, filePath4, subdir1, subdir2;
-    private Rule rule1 = mock(Rule.class);
-    private Rule rule2 = mock(Rule.class);
+    private Rule rule1 = mockRule("rule1");
+    private Rule rule2 = mockRule("rule2");
     private List<Rule> rules = list(rule1, rule2);
 
     @BeforeEach
@@ -62,6 +72,15 @@ class KiboshRunnerTest extends AbstractKiboshTest {
             kiboshRunner.applyRules(rules);
         }
 
+        @Test
+        void InvalidRule_FailsBeforeCheckingFiles() {
+            TextRule invalidRule = TextRule.builder().name("Invalid").illegalRegularExpression("a(b").build();
+            assertThatIllegalArgumentException()
+                    .isThrownBy(() -> kiboshRunner.applyRules(rule1, invalidRule))
+                    .withMessageContaining("Invalid: invalid regular expression /a(b/");
+            verify(rule1, never()).applyToFile(any());
+        }
+
         @Test
         void Files_NoViolations() throws IOException {
             Files.createFile(Paths.get(tempDir, "SomeFile.java"));
@@ -108,6 +127,19 @@ class KiboshRunnerTest extends AbstractKiboshTest {
             assertViolations(VIOLATION1, VIOLATION2);   // does not include WARNING violations
         }
 
+        @Test
+        void FileExcludedByAllRules_NotRead() {
+            when(rule1.appliesTo(filePath1)).thenReturn(false);
+            when(rule2.appliesTo(filePath1)).thenReturn(false);
+            when(rule1.appliesTo(filePath2)).thenReturn(false);
+            when(rule2.applyToFile(filePath2)).thenReturn(list(VIOLATION2));
+
+            assertViolations(VIOLATION2);
+            verify(rule1, never()).applyToSourceFile(argThat(sourceFile -> sourceFile.getPath().equals(filePath1)));
+            verify(rule2, never()).applyToSourceFile(argThat(sourceFile -> sourceFile.getPath().equals(filePath1)));
+            verify(rule1, never()).applyToFile(filePath2);
+        }
+
         @Test
         void IgnoresNonJavaFiles() throws IOException {
             Path path = Paths.get(tempDir, "SomeFile.txt");
@@ -154,6 +186,712 @@ class KiboshRunnerTest extends AbstractKiboshTest {
         }
     }
 
+    @Nested
+    class ExcludeDirectories {
+
+        @Test
+        void ExcludedDirectories_NotWalked() {
+            kiboshRunner = KiboshRunner.builder()
+                    .baseDirectory(tempDir)
+                    .excludeDirectory("subdir1")
+                    .build();
+            kiboshRunner.applyRules(rules);
+
+            verify(rule1).applyToFile(filePath1);
+            verify(rule1, never()).applyToFile(filePath3);
+            verify(rule1, never()).applyToFile(filePath4);
+        }
+
+        @Test
+        void PathPattern() {
+            kiboshRunner = KiboshRunner.builder()
+                    .baseDirectory(tempDir)
+                    .excludeDirectory("**/subdir1")
+                    .build();
+            kiboshRunner.applyRules(rules);
+            verify(rule1, never()).applyToFile(filePath3);
+        }
+
+        @Test
+        void IgnoreFiles() throws IOException {
+            Files.createDirectory(Paths.get(tempDir, ".git"));
+            Files.createFile(Paths.get(tempDir, ".git", "Ignored.java"));
+            Files.write(Paths.get(tempDir, ".gitignore"), "File1.java\n".getBytes());
+            Files.write(subdir1.resolve(".gitignore"), "*.java\n!File4.java\n".getBytes());
+
+            kiboshRunner = KiboshRunner.builder()
+                    .baseDirectory(tempDir)
+                    .useIgnoreFiles(true)
+                    .build();
+            kiboshRunner.applyRules(rules);
+
+            verify(rule1, never()).applyToFile(filePath1);
+            verify(rule1).applyToFile(filePath2);
+            verify(rule1, never()).applyToFile(filePath3);
+            verify(rule1).applyToFile(filePath4);
+            verify(rule1, never()).applyToFile(Paths.get(tempDir, ".git", "Ignored.java"));
+        }
+
+        @Test
+        void IgnoreFiles_EnclosingWorkingTree() throws IOException {
+            Files.createDirectory(Paths.get(tempDir, ".git"));
+            Files.write(Paths.get(tempDir, ".gitignore"), "File3.java\n".getBytes());
+
+            kiboshRunner = KiboshRunner.builder()
+                    .baseDirectory(subdir1.toString())
+                    .useIgnoreFiles(true)
+                    .build();
+            kiboshRunner.applyRules(rules);
+
+            verify(rule1, never()).applyToFile(filePath3);
+            verify(rule1).applyToFile(filePath4);
+        }
+    }
+
+    @Nested
+    class ChangedFilesOnly {
+
+        @Test
+        void OnlyChangedFilesWithinBaseDirectoriesAndMatchingFileNames() throws IOException {
+            Path otherFile = Files.createTempFile("Other", ".java");
+            Path propertiesFile = Files.createFile(Paths.get(tempDir, "config.properties"));
+            try {
+                kiboshRunner = KiboshRunner.builder()
+                        .baseDirectory(tempDir)
+                        .changedFile(filePath3.toString())
+                        .changedFile(otherFile.toString())
+                        .changedFile(propertiesFile.toString())
+                        .changedFile(Paths.get(tempDir, "Deleted.java").toString())
+                        .build();
+                kiboshRunner.applyRules(rules);
+
+                verify(rule1).applyToFile(filePath3);
+                verify(rule1, never()).applyToFile(filePath1);
+                verify(rule1, never()).applyToFile(filePath4);
+                verify(rule1, never()).applyToFile(otherFile);
+                verify(rule1, never()).applyToFile(propertiesFile);
+            } finally {
+                Files.delete(otherFile);
+            }
+        }
+
+        @Test
+        void SameExclusionsAsWalk() throws IOException {
+            Files.write(Paths.get(tempDir, ".gitignore"), "File4.java\n".getBytes());
+            Path excludedFile = Files.createFile(subdir2.resolve("File5.java"));
+
+            kiboshRunner = KiboshRunner.builder()
+                    .baseDirectory(tempDir)
+                    .excludeDirectory("subdir2")
+                    .useIgnoreFiles(true)
+                    .changedFile(filePath3.toString())
+                    .changedFile(filePath4.toString())
+                    .changedFile(excludedFile.toString())
+                    .build();
+            kiboshRunner.applyRules(rules);
+
+            verify(rule1).applyToFile(filePath3);
+            verify(rule1, never()).applyToFile(filePath4);
+            verify(rule1, never()).applyToFile(excludedFile);
+        }
+
+        @Test
+        void ListFile() throws IOException {
+            Path listFile = Files.write(Paths.get(tempDir, "changed.txt"),
+                    (filePath1 + "\n\n" + filePath4 + "\n").getBytes());
+
+            kiboshRunner = KiboshRunner.builder()
+                    .baseDirectory(tempDir)
+                    .changedFilesListFile(listFile.toString())
+                    .build();
+            kiboshRunner.applyRules(rules);
+
+            verify(rule1).applyToFile(filePath1);
+            verify(rule1).applyToFile(filePath4);
+            verify(rule1, never()).applyToFile(filePath2);
+            verify(rule1, never()).applyToFile(filePath3);
+        }
+
+        @Test
+        void EmptyListFile_NoFilesChecked() throws IOException {
+            Path listFile = Files.createFile(Paths.get(tempDir, "changed.txt"));
+
+            kiboshRunner = KiboshRunner.builder()
+                    .baseDirectory(tempDir)
+                    .changedFilesListFile(listFile.toString())
+                    .build();
+            kiboshRunner.applyRules(rules);
+
+            verify(rule1, never()).applyToFile(any());
+        }
+    }
+
+    @Nested
+    class Parallelism {
+
+        @BeforeEach
+        void beforeEach() {
+            kiboshRunner = KiboshRunner.builder()
+                    .baseDirectory(subdir1.toString())
+                    .baseDirectory(tempDir)
+                    .parallelism(4)
+                    .build();
+        }
+
+        @Test
+        void MultipleViolations_SortedByPath() {
+            when(rule2.applyToFile(filePath4)).thenReturn(list(VIOLATION2));
+            when(rule1.applyToFile(filePath1)).thenReturn(list(VIOLATION1));
+            when(rule2.applyToFile(filePath3)).thenReturn(list(VIOLATION3));
+            assertViolationsInOrder(VIOLATION1, VIOLATION2);
+        }
+
+        @Test
+        void SameFile_SortedByLineNumber() {
+            Violation line2 = Violation.builder().message("line2").lineNumber(2).build();
+            Violation line7 = Violation.builder().message("line7").lineNumber(7).build();
+            when(rule1.applyToFile(filePath2)).thenReturn(list(line7));
+            when(rule2.applyToFile(filePath2)).thenReturn(list(line2));
+            assertViolationsInOrder(line2, line7);
+        }
+
+        @Test
+        void VirtualThreads_OrFallback() {
+            kiboshRunner = KiboshRunner.builder()
+                    .baseDirectory(subdir1.toString())
+                    .baseDirectory(tempDir)
+                    .virtualThreads(true)
+                    .maxOpenFiles(1)
+                    .build();
+            when(rule2.applyToFile(filePath4)).thenReturn(list(VIOLATION2));
+            when(rule1.applyToFile(filePath1)).thenReturn(list(VIOLATION1));
+            assertViolationsInOrder(VIOLATION1, VIOLATION2);
+        }
+
+        @Test
+        void VirtualThreads_AvailableOnJava21() {
+            String version = System.getProperty("java.specification.version");
+            boolean java21 = !version.startsWith("1.") && Integer.parseInt(version) >= 21;
+            assertThat(VirtualThreads.isAvailable()).isEqualTo(java21);
+            assertThat(VirtualThreads.newExecutorService() != null).isEqualTo(java21);
+        }
+
+        @Test
+        void ExecutorService() {
+            ExecutorService executorService = Executors.newFixedThreadPool(2);
+            try {
+                kiboshRunner = KiboshRunner.builder()
+                        .baseDirectory(tempDir)
+                        .executorService(executorService)
+                        .build();
+                when(rule1.applyToFile(filePath3)).thenReturn(list(VIOLATION1));
+                assertViolationsInOrder(VIOLATION1);
+                assertThat(executorService.isShutdown()).isFalse();
+            } finally {
+                executorService.shutdown();
+            }
+        }
+
+        @Test
+        void RuleThrowsException() {
+            RuntimeException exception = new RuntimeException("bad");
+            when(rule1.applyToFile(filePath3)).thenThrow(exception);
+            assertThatThrownBy(() -> kiboshRunner.applyRules(rules)).isSameAs(exception);
+        }
+
+        private void assertViolationsInOrder(Violation... expectedViolations) {
+            assertThatThrownBy(() -> kiboshRunner.applyRules(rules))
+                    .isInstanceOfSatisfying(KiboshViolationsException.class,
+                            e -> assertThat(e.getViolations()).containsExactly(expectedViolations));
+        }
+    }
+
+    @Nested
+    class ViolationSinks {
+
+        private final Violation violation4 = Violation.builder().rule(rule2).message("m4").build();
+
+        @BeforeEach
+        void beforeEach() {
+            when(rule1.applyToFile(filePath1)).thenReturn(list(VIOLATION1));
+            when(rule1.applyToFile(filePath2)).thenReturn(list(VIOLATION2));
+            when(rule1.applyToFile(filePath3)).thenReturn(list(VIOLATION3));
+            when(rule2.applyToFile(filePath4)).thenReturn(list(violation4));
+        }
+
+        @Test
+        void AdditionalSinks_ReceiveAllViolationsInOrder() {
+            ViolationSink sink = mock(ViolationSink.class);
+            kiboshRunner = KiboshRunner.builder().baseDirectory(tempDir).violationSink(sink).build();
+
+            assertThatThrownBy(() -> kiboshRunner.applyRules(rules)).isInstanceOf(KiboshViolationsException.class);
+
+            InOrder inOrder = inOrder(sink);
+            inOrder.verify(sink).start();
+            inOrder.verify(sink).add(VIOLATION1);
+            inOrder.verify(sink).add(VIOLATION2);
+            inOrder.verify(sink).add(VIOLATION3);
+            inOrder.verify(sink).add(violation4);
+            inOrder.verify(sink).finish();
+        }
+
+        @Test
+        void SinkFailsToStart_StartedSinksFinished() {
+            ViolationSink sink = mock(ViolationSink.class);
+            ViolationSink failingSink = mock(ViolationSink.class);
+            doThrow(new IllegalStateException("start failed")).when(failingSink).start();
+            kiboshRunner = KiboshRunner.builder().baseDirectory(tempDir).violationSink(sink).violationSink(failingSink).build();
+
+            assertThatIllegalStateException().isThrownBy(() -> kiboshRunner.applyRules(rules)).withMessage("start failed");
+
+            verify(sink).start();
+            verify(sink).finish();
+            verify(failingSink, never()).finish();
+            verify(sink, never()).add(any());
+        }
+
+        @Test
+        void ReportFileViolationSink() throws IOException {
+            Path reportFile = tempDirPath.resolve("reports").resolve("kibosh.txt");
+            kiboshRunner = KiboshRunner.builder()
+                    .baseDirectory(subdir1.toString())
+                    .violationSink(new ReportFileViolationSink(reportFile))
+                    .build();
+
+            assertThatThrownBy(() -> kiboshRunner.applyRules(rules)).isInstanceOf(KiboshViolationsException.class);
+
+            assertThat(Files.readAllLines(reportFile)).containsExactly("WARNING m3", "ERROR m4");
+        }
+
+        @Test
+        void MaxViolations() {
+            kiboshRunner = KiboshRunner.builder().baseDirectory(tempDir).maxViolations(2).build();
+            assertThatThrownBy(() -> kiboshRunner.applyRules(rules))
+                    .isInstanceOfSatisfying(KiboshViolationsException.class, e -> {
+                        assertThat(e.getViolations()).containsExactly(VIOLATION1, VIOLATION2);
+                        assertThat(e.getTotalCount()).isEqualTo(3);
+                        assertThat(e.getMessage()).startsWith("3 Violations (showing the first 2)");
+                    });
+        }
+
+        @Test
+        void MaxViolationsPerRule() {
+            kiboshRunner = KiboshRunner.builder().baseDirectory(tempDir).maxViolationsPerRule(1).build();
+            assertThatThrownBy(() -> kiboshRunner.applyRules(rules))
+                    .isInstanceOfSatisfying(KiboshViolationsException.class, e -> {
+                        // VIOLATION1, VIOLATION2 and VIOLATION3 have no rule; only the first is kept
+                        assertThat(e.getViolations()).containsExactly(VIOLATION1, violation4);
+                        assertThat(e.getTotalCount()).isEqualTo(3);
+                    });
+        }
+    }
+
+    @Nested
+    class Listeners {
+
+        private KiboshListener listener = mock(KiboshListener.class);
+        private TimingSummaryListener timingSummaryListener = new TimingSummaryListener(2);
+
+        @Test
+        void ReceivesRunFileAndRuleEvents() throws IOException {
+            Files.write(filePath1, "abc".getBytes());
+            doAnswer(invocation -> {
+                invocation.<SourceFile>getArgument(0).getText();
+                return list(VIOLATION3);
+            }).when(rule1).applyToSourceFile(any());
+            kiboshRunner = KiboshRunner.builder()
+                    .baseDirectory(tempDir)
+                    .listener(listener)
+                    .listener(timingSummaryListener)
+                    .build();
+
+            kiboshRunner.applyRules(rules);
+
+            verify(listener).runStarted(rules);
+            verify(listener).fileStarted(filePath1);
+            verify(listener).ruleStarted(rule1, filePath1);
+            verify(listener).ruleFinished(eq(rule1), eq(filePath1), anyLong(), eq(1));
+            verify(listener).ruleFinished(eq(rule2), eq(filePath1), anyLong(), eq(0));
+            verify(listener).fileFinished(eq(filePath1), anyLong(), eq(3L), eq(1));
+            verify(listener).fileFinished(eq(filePath4), anyLong(), eq(0L), eq(1));
+            verify(listener).runFinished(anyLong(), eq(4));
+
+            assertThat(timingSummaryListener.getRuleNanos(rule1)).isPositive();
+            assertThat(timingSummaryListener.getFileNanos(filePath1)).isPositive();
+        }
+
+        @Test
+        void FileExcludedByAllRules_NoFileEvents() {
+            when(rule1.appliesTo(filePath1)).thenReturn(false);
+            when(rule2.appliesTo(filePath1)).thenReturn(false);
+            kiboshRunner = KiboshRunner.builder().baseDirectory(tempDir).listener(listener).build();
+
+            kiboshRunner.applyRules(rules);
+
+            verify(listener, never()).fileStarted(filePath1);
+            verify(listener).fileStarted(filePath2);
+        }
+    }
+
+    @Nested
+    class ResultCaching {
+
+        private Path cacheFile;
+
+        @BeforeEach
+        void beforeEach() throws IOException {
+            cacheFile = tempDirPath.resolve("cache").resolve("result-cache.bin");
+            kiboshRunner = cachingRunner().build();
+            when(rule1.getFingerprint()).thenReturn("rule1");
+            when(rule2.getFingerprint()).thenReturn("rule2");
+            Files.write(filePath3, "abc".getBytes());
+            when(rule1.applyToFile(filePath3)).thenReturn(list(violation(rule1, 3)));
+        }
+
+        @Test
+        void UnchangedFiles_UsesCachedViolations() {
+            List<Violation> violations = applyRulesAndGetViolations();
+            assertThat(cacheFile).exists();
+
+            assertThat(applyRulesAndGetViolations()).isEqualTo(violations);
+            verify(rule1, times(1)).applyToFile(filePath3);
+            verify(rule2, times(1)).applyToFile(filePath4);
+        }
+
+        @Test
+        void LastModifiedTimeChanged_SameContents_UsesCachedViolations() throws IOException {
+            applyRulesAndGetViolations();
+            Files.setLastModifiedTime(filePath3, FileTime.fromMillis(System.currentTimeMillis() + 60000));
+
+            assertThat(applyRulesAndGetViolations()).hasSize(1);
+            verify(rule1, times(1)).applyToFile(filePath3);
+        }
+
+        @Test
+        void MemoryMappedFile_LastModifiedTimeChanged_UsesCachedViolations() throws IOException {
+            kiboshRunner = cachingRunner().memoryMapThreshold(1).build();
+            applyRulesAndGetViolations();
+            Files.setLastModifiedTime(filePath3, FileTime.fromMillis(System.currentTimeMillis() + 60000));
+
+            assertThat(applyRulesAndGetViolations()).hasSize(1);
+            verify(rule1, times(1)).applyToFile(filePath3);
+        }
+
+        @Test
+        void ChangedFile_AppliesRulesAgain() throws IOException {
+            applyRulesAndGetViolations();
+            Files.write(filePath3, "changed".getBytes());
+
+            applyRulesAndGetViolations();
+            verify(rule1, times(2)).applyToFile(filePath3);
+            verify(rule1, times(1)).applyToFile(filePath4);
+        }
+
+        @Test
+        void ChangedRuleFingerprint_AppliesRulesAgain() {
+            applyRulesAndGetViolations();
+            when(rule2.getFingerprint()).thenReturn("rule2-changed");
+
+            assertThat(applyRulesAndGetViolations()).hasSize(1);
+            verify(rule1, times(2)).applyToFile(filePath3);
+            verify(rule1, times(2)).applyToFile(filePath4);
+        }
+
+        @Test
+        void RuleWithoutFingerprint_DoesNotUseCache() {
+            when(rule2.getFingerprint()).thenReturn(null);
+            applyRulesAndGetViolations();
+            applyRulesAndGetViolations();
+            assertThat(cacheFile).doesNotExist();
+            verify(rule1, times(2)).applyToFile(filePath3);
+        }
+
+        @Test
+        void ChangedCharset_AppliesRulesAgain() {
+            applyRulesAndGetViolations();
+            kiboshRunner = cachingRunner().charset(StandardCharsets.ISO_8859_1).build();
+
+            applyRulesAndGetViolations();
+            verify(rule1, times(2)).applyToFile(filePath3);
+        }
+
+        @Test
+        void RunForSubsetOfFiles_KeepsEntriesForOtherFiles() throws IOException {
+            applyRulesAndGetViolations();
+            Files.write(filePath4, "changed".getBytes());
+            cachingRunner().changedFile(filePath4.toString()).build().applyRules(rules);
+            verify(rule1, times(2)).applyToFile(filePath4);
+
+            applyRulesAndGetViolations();
+            verify(rule1, times(1)).applyToFile(filePath3);
+            verify(rule1, times(2)).applyToFile(filePath4);
+        }
+
+        @Test
+        void RegexTimeLimitExceeded_NotCached() throws IOException {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < 35; i++) {
+                text.append('a');
+            }
+            Files.write(filePath3, text.toString().getBytes());
+            TextRule timeLimitedRule = TextRule.builder()
+                    .name("TimeLimited")
+                    .illegalRegularExpression("(.*a){40}")
+                    .regexTimeLimitMillis(50)
+                    .build();
+            rules = list(timeLimitedRule, rule1);
+
+            applyRulesAndGetViolations();
+            applyRulesAndGetViolations();
+            verify(rule1, times(2)).applyToFile(filePath3);
+            verify(rule1, times(1)).applyToFile(filePath4);
+        }
+
+        private KiboshRunner.KiboshRunnerBuilder cachingRunner() {
+            return KiboshRunner.builder()
+                    .baseDirectory(subdir1.toString())
+                    .resultCache(true)
+                    .resultCacheFile(cacheFile.toString());
+        }
+
+        private Violation violation(Rule rule, int lineNumber) {
+            return Violation.builder().rule(rule).message("m").lineNumber(lineNumber).columnNumber(2).build();
+        }
+
+        private List<Violation> applyRulesAndGetViolations() {
+            try {
+                kiboshRunner.applyRules(rules);
+                fail("Expected KiboshViolationsException");
+                return null;
+            } catch(KiboshViolationsException e) {
+                return e.getViolations();
+            }
+        }
+    }
+
+    @Nested
+    class CombineRegularExpressions {
+
+        @Test
+        void SameViolationsAsSeparateMatching() throws IOException {
+            Files.write(filePath1, "aa b12\nb3 aa".getBytes());
+            TextRule textRule = TextRule.builder()
+                    .name("Regexes")
+                    .illegalRegularExpression("b\\d+")
+                    .illegalRegularExpression("(a)\\1")
+                    .build();
+            KiboshRunner.KiboshRunnerBuilder builder = KiboshRunner.builder().baseDirectory(tempDir);
+
+            List<Violation> expected = applyRulesAndGetViolations(textRule, builder.build());
+            List<Violation> violations = applyRulesAndGetViolations(textRule, builder.combineRegularExpressions(true).build());
+
+            assertThat(violations).isEqualTo(expected);
+            assertThat(violations).extracting(Violation::getLineNumber).containsExactly(1, 1, 2, 2);
+        }
+
+        @Test
+        void RegexTimeLimit_NotCombined() throws IOException {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < 35; i++) {
+                text.append('a');
+            }
+            Files.write(filePath1, text.append(" y").toString().getBytes());
+            TextRule timeLimitedRule = TextRule.builder()
+                    .name("TimeLimited")
+                    .illegalRegularExpression("(.*a){40}")
+                    .regexTimeLimitMillis(50)
+                    .build();
+            TextRule otherRule = TextRule.builder().name("Other").illegalRegularExpression("y").build();
+            List<Violation> violations = new ArrayList<>();
+            kiboshRunner = KiboshRunner.builder()
+                    .baseDirectory(tempDir)
+                    .applyToFileNames("File1.java")
+                    .combineRegularExpressions(true)
+                    .violationSink(violations::add)
+                    .build();
+
+            long startTime = System.nanoTime();
+            assertThatExceptionOfType(KiboshViolationsException.class).isThrownBy(() -> kiboshRunner.applyRules(timeLimitedRule, otherRule));
+            assertThat(System.nanoTime() - startTime).isLessThan(TimeUnit.SECONDS.toNanos(10));
+            assertThat(violations)
+                    .extracting(v -> v.getRule().getName(), Violation::getSeverity)
+                    .containsExactlyInAnyOrder(tuple("TimeLimited", WARNING), tuple("Other", ERROR));
+        }
+    }
+
+    @Nested
+    class LargeFiles {
+
+        private final TextRule textRule = TextRule.builder()
+                .name("NoBad")
+                .description("no bad")
+                .illegalString("BAD")
+                .requiredString("header")
+                .requiredString("line 4")
+                .requiredRegularExpression("line 4 \\w+")
+                .build();
+
+        @BeforeEach
+        void beforeEach() throws IOException {
+            Files.write(filePath3, "line 1\nline 2 BAD\nline 3\nline 4 BAD\n".getBytes());
+        }
+
+        @Test
+        void SkipMode_SkipsLargeFiles() {
+            kiboshRunner = KiboshRunner.builder()
+                    .baseDirectory(subdir1.toString())
+                    .applyToFileNames("File3.java")
+                    .largeFileThreshold(10)
+                    .largeFileMode(LargeFileMode.SKIP)
+                    .build();
+            kiboshRunner.applyRules(list(textRule));
+        }
+
+        @Test
+        void ChunkMode_SameViolationsAsScanMode() {
+            List<Violation> expected = applyRulesAndGetViolations(textRule, KiboshRunner.builder()
+                    .baseDirectory(subdir1.toString())
+                    .applyToFileNames("File3.java")
+                    .build());
+
+            List<Violation> violations = applyRulesAndGetViolations(textRule, KiboshRunner.builder()
+                    .baseDirectory(subdir1.toString())
+                    .applyToFileNames("File3.java")
+                    .largeFileThreshold(10)
+                    .largeFileMode(LargeFileMode.CHUNK)
+                    .chunkSize(12)
+                    .chunkOverlap(4)
+                    .build());
+
+            assertThat(violations).isEqualTo(expected);
+            assertThat(violations).extracting(Violation::getLineNumber).containsExactly(1, 2, 4);
+        }
+    }
+
+    @Nested
+    class LargestFilesFirst {
+
+        @Test
+        void LargestFilesStartedFirst_ViolationsInPathOrder() throws IOException {
+            Files.write(filePath1, new byte[10]);
+            Files.write(filePath2, new byte[30]);
+            Files.write(filePath3, new byte[20]);
+            when(rule1.applyToFile(filePath1)).thenReturn(list(VIOLATION1));
+            when(rule1.applyToFile(filePath2)).thenReturn(list(VIOLATION2));
+            when(rule1.applyToFile(filePath3)).thenReturn(list(VIOLATION3));
+            List<Path> startedFiles = new ArrayList<>();
+            List<Violation> violations = new ArrayList<>();
+            ExecutorService executorService = Executors.newSingleThreadExecutor();
+            try {
+                kiboshRunner = KiboshRunner.builder()
+                        .baseDirectory(tempDir)
+                        .executorService(executorService)
+                        .largestFilesFirst(true)
+                        .listener(new KiboshListener() {
+                            @Override
+                            public void fileStarted(Path file) {
+                                startedFiles.add(file);
+                            }
+                        })
+                        .violationSink(violations::add)
+                        .build();
+                assertThatExceptionOfType(KiboshViolationsException.class).isThrownBy(() -> kiboshRunner.applyRules(rule1));
+            } finally {
+                executorService.shutdown();
+            }
+
+            assertThat(startedFiles).containsExactly(filePath2, filePath3, filePath1, filePath4);
+            assertThat(violations).containsExactly(VIOLATION1, VIOLATION2, VIOLATION3);
+        }
+
+        @Test
+        void ParallelChunks_SameViolationsAsSequentialScan() throws IOException {
+            StringBuilder text = new StringBuilder("header\n");
+            for (int line = 2; line <= 2000; line++) {
+                text.append(line % 7 == 0 ? "a BAD line" : "a good line").append(line % 13 == 0 ? " BAD\n" : "\n");
+            }
+            text.append("trailer\n");
+            Files.write(filePath3, text.toString().getBytes());
+            TextRule textRule = TextRule.builder()
+                    .name("NoBad")
+                    .illegalString("BAD")
+                    .illegalRegularExpression("good line\\s+a BAD")
+                    // Anchors and lookbehind see the whole file, not just the chunk
+                    .illegalRegularExpression("\\Aa good|^a BAD")
+                    .illegalRegularExpression("(?<=BAD\n)a good")
+                    .requiredString("header")
+                    .requiredString("trailer")
+                    .requiredString("missing")
+                    .requiredRegularExpression("tr\\w+er")
+                    .requiredRegularExpression("a BAD line BAD")
+                    .requiredRegularExpression("missing\\d")
+                    .build();
+
+            List<Violation> expected = applyRulesAndGetViolations(textRule, KiboshRunner.builder()
+                    .baseDirectory(subdir1.toString())
+                    .build());
+
+            List<Violation> violations = applyRulesAndGetViolations(textRule, KiboshRunner.builder()
+                    .baseDirectory(subdir1.toString())
+                    .parallelism(4)
+                    .largestFilesFirst(true)
+                    .largeFileThreshold(100)
+                    .chunkSize(500)
+                    .chunkOverlap(50)
+                    .build());
+
+            assertThat(violations).hasSize(expected.size()).isEqualTo(expected);
+            assertThat(expected.size()).isGreaterThan(400);
+            // Only those required strings and regular expressions missing from every chunk are reported
+            assertThat(violations)
+                    .extracting(Violation::getMessage)
+                    .filteredOn(message -> message.contains("File3.java:1) does not contain"))
+                    .hasSize(2)
+                    .allMatch(message -> message.contains("missing"));
+        }
+    }
+
+    @Nested
+    class LineRules {
+
+        @Test
+        void AppliedInSinglePassAlongWithOtherRules() throws IOException {
+            Files.write(filePath3, "ok\nBAD line   \nlast\tline\n".getBytes());
+            TextRule textRule = TextRule.builder().name("NoBad").illegalString("BAD").build();
+            LineRule whitespaceRule = LineRule.builder().name("Whitespace").illegalTrailingWhitespace(true).build();
+            LineRule tabRule = LineRule.builder().name("Tabs").illegalTabs(true).build();
+            kiboshRunner = KiboshRunner.builder()
+                    .baseDirectory(subdir1.toString())
+                    .build();
+
+            assertThatExceptionOfType(KiboshViolationsException.class)
+                    .isThrownBy(() -> kiboshRunner.applyRules(textRule, whitespaceRule, tabRule))
+                    .satisfies(e -> assertThat(e.getViolations())
+                            .extracting(v -> v.getRule().getName(), Violation::getLineNumber, Violation::getColumnNumber)
+                            .containsExactly(tuple("NoBad", 2, 1), tuple("Whitespace", 2, 9), tuple("Tabs", 3, 5)));
+        }
+    }
+
+    // Stub the Rule default methods explicitly, rather than relying on the mock calling the real methods
+    private static Rule mockRule(String name) {
+        Rule rule = mock(Rule.class);
+        when(rule.getName()).thenReturn(name);
+        when(rule.appliesTo(any())).thenReturn(true);
+        when(rule.applyToSourceFile(any()))
+                .thenAnswer(invocation -> rule.applyToFile(invocation.<SourceFile>getArgument(0).getPath()));
+        return rule;
+    }
+
+    private static List<Violation> applyRulesAndGetViolations(Rule rule, KiboshRunner runner) {
+        try {
+            runner.applyRules(rule);
+            fail("Expected KiboshViolationsException");
+            return null;
+        } catch(KiboshViolationsException e) {
+            return e.getViolations();
+        }
+    }
+
     private void assertViolations(Violation... expectedViolations) {
         try {
             kiboshRunner.applyRules(rule1, rule2);
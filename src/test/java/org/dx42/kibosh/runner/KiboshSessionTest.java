@@ -0,0 +1,96 @@
+package org.dx42.kibosh.runner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dx42.kibosh.rule.Rule;
+import org.dx42.kibosh.rule.TextRule;
+import org.dx42.kibosh.rule.Violation;
+import org.dx42.kibosh.test.AbstractKiboshTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class KiboshSessionTest extends AbstractKiboshTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final KiboshSession session = KiboshSession.builder().build();
+    private final Rule rule1 = TextRule.builder().name("NoFoo").illegalString("foo").build();
+    private final Rule rule2 = TextRule.builder().name("NoBar").illegalString("bar").build();
+    private Path file1;
+
+    @BeforeEach
+    void beforeEach() throws IOException {
+        file1 = write("File1.java", "foo bar");
+        write("File2.java", "ok");
+    }
+
+    @Test
+    void RunnersShareFilesAndContents() {
+        assertThat(violations(rule1)).hasSize(1);
+        assertThat(violations(rule2)).hasSize(1);
+
+        assertThat(session.getContentCache().getMissCount()).isEqualTo(2);
+        assertThat(session.getContentCache().getHitCount()).isEqualTo(2);
+    }
+
+    @Test
+    void ChangedFileReadAgain() throws IOException {
+        assertThat(violations(rule1)).hasSize(1);
+        Files.write(file1, "bar".getBytes(UTF_8));
+
+        assertThat(violations(rule1)).isEmpty();
+        assertThat(violations(rule2)).hasSize(1);
+        assertThat(session.getContentCache().getMissCount()).isEqualTo(3);
+    }
+
+    @Test
+    void NewFileFoundOnlyAfterInvalidate() throws IOException {
+        assertThat(violations(rule1)).hasSize(1);
+        write("File3.java", "foo");
+        assertThat(violations(rule1)).hasSize(1);
+
+        session.invalidate();
+        assertThat(violations(rule1)).hasSize(2);
+    }
+
+    @Test
+    void DeletedFileSkipped() throws IOException {
+        assertThat(violations(rule1)).hasSize(1);
+        Files.delete(file1);
+        assertThat(violations(rule1)).isEmpty();
+    }
+
+    @Test
+    void Shared() {
+        assertThat(KiboshSession.shared()).isSameAs(KiboshSession.shared());
+    }
+
+    private List<Violation> violations(Rule rule) {
+        List<Violation> violations = new ArrayList<>();
+        KiboshRunner runner = KiboshRunner.builder()
+                .baseDirectory(tempDir.toString())
+                .session(session)
+                .violationSink(violations::add)
+                .build();
+        try {
+            runner.applyRules(rule);
+        } catch (KiboshViolationsException e) {
+            assertThat(violations).isNotEmpty();
+        }
+        return violations;
+    }
+
+    private Path write(String fileName, String text) throws IOException {
+        return Files.write(tempDir.resolve(fileName), text.getBytes(UTF_8));
+    }
+
+}
@@ -0,0 +1,152 @@
+package org.dx42.kibosh.runner;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Value;
+import org.dx42.kibosh.rule.TextRule;
+import org.dx42.kibosh.rule.Violation;
+import org.dx42.kibosh.test.AbstractKiboshTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class KiboshWatcherTest extends AbstractKiboshTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    @TempDir
+    Path tempDir;
+
+    private final TextRule rule = TextRule.builder()
+            .name("NoBad")
+            .illegalString("BAD")
+            .build();
+    private final BlockingQueue<Change> changes = new LinkedBlockingQueue<>();
+    private KiboshWatcher watcher;
+    private Path file1;
+
+    @BeforeEach
+    void beforeEach() throws IOException {
+        file1 = write(tempDir.resolve("File1.java"), "BAD\nok\n");
+        write(tempDir.resolve("File2.java"), "ok\n");
+        write(tempDir.resolve("Other.txt"), "BAD\n");
+        KiboshRunner runner = KiboshRunner.builder()
+                .baseDirectory(tempDir.toString())
+                .excludeDirectory("build")
+                .watchDebounceMillis(50)
+                .build();
+        watcher = runner.watch(list(rule), (file, added, removed) -> changes.add(new Change(file, added, removed)));
+    }
+
+    @AfterEach
+    void afterEach() throws IOException {
+        watcher.close();
+    }
+
+    @Test
+    void InitialCheck() {
+        Change change = changes.remove();
+        assertThat(change.getFile()).isEqualTo(file1);
+        assertThat(change.getAdded()).extracting(Violation::getLineNumber).containsExactly(1);
+        assertThat(change.getRemoved()).isEmpty();
+        assertThat(changes).isEmpty();
+        assertThat(watcher.getViolations()).containsOnlyKeys(file1);
+    }
+
+    @Test
+    void ModifiedFile() throws Exception {
+        changes.remove();
+        write(file1, "ok\nBAD\n");
+
+        Change change = nextChange();
+        assertThat(change.getFile()).isEqualTo(file1);
+        assertThat(change.getAdded()).extracting(Violation::getLineNumber).containsExactly(2);
+        assertThat(change.getRemoved()).extracting(Violation::getLineNumber).containsExactly(1);
+
+        write(file1, "ok\n");
+        change = nextChange();
+        assertThat(change.getAdded()).isEmpty();
+        assertThat(change.getRemoved()).extracting(Violation::getLineNumber).containsExactly(2);
+        assertThat(watcher.getViolations()).isEmpty();
+    }
+
+    @Test
+    void NewDirectoryAndFile() throws Exception {
+        changes.remove();
+        Files.createDirectories(tempDir.resolve("build"));
+        write(tempDir.resolve("build/Generated.java"), "BAD\n");
+        Path subdir = Files.createDirectories(tempDir.resolve("subdir"));
+        Path newFile = write(subdir.resolve("New.java"), "BAD\n");
+
+        Change change = nextChange();
+        assertThat(change.getFile()).isEqualTo(newFile);
+        assertThat(change.getAdded()).hasSize(1);
+        assertThat(changes.poll(500, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(watcher.getViolations()).containsOnlyKeys(file1, newFile);
+    }
+
+    @Test
+    void IgnoreFiles_SameAsWalk() throws Exception {
+        watcher.close();
+        write(tempDir.resolve(".gitignore"), "Ignored.java\ngen/\n");
+        KiboshRunner runner = KiboshRunner.builder()
+                .baseDirectory(tempDir.toString())
+                .useIgnoreFiles(true)
+                .watchDebounceMillis(50)
+                .build();
+        watcher = runner.watch(list(rule), (file, added, removed) -> changes.add(new Change(file, added, removed)));
+        changes.clear();
+
+        // Ignored by the base directory's ignore file, even though it is not within a git working tree
+        write(tempDir.resolve("Ignored.java"), "BAD\n");
+        Files.createDirectories(tempDir.resolve("gen"));
+        write(tempDir.resolve("gen/Generated.java"), "BAD\n");
+        Path newDir = Files.createDirectories(tempDir.resolve("newdir"));
+        write(newDir.resolve("Ignored.java"), "BAD\n");
+        Path newFile = write(newDir.resolve("New.java"), "BAD\n");
+
+        Change change = nextChange();
+        assertThat(change.getFile()).isEqualTo(newFile);
+        assertThat(changes.poll(500, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(watcher.getViolations()).containsOnlyKeys(file1, newFile);
+    }
+
+    @Test
+    void DeletedFile() throws Exception {
+        changes.remove();
+        Files.delete(file1);
+
+        Change change = nextChange();
+        assertThat(change.getFile()).isEqualTo(file1);
+        assertThat(change.getAdded()).isEmpty();
+        assertThat(change.getRemoved()).hasSize(1);
+        assertThat(watcher.getViolations()).isEmpty();
+    }
+
+    private Change nextChange() throws InterruptedException {
+        Change change = changes.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertThat(change).describedAs("no change within timeout").isNotNull();
+        return change;
+    }
+
+    private static Path write(Path file, String text) throws IOException {
+        return Files.write(file, text.getBytes());
+    }
+
+    @Value
+    private static class Change {
+        Path file;
+        List<Violation> added;
+        List<Violation> removed;
+    }
+
+}
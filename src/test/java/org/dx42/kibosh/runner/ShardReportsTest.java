@@ -0,0 +1,96 @@
+package org.dx42.kibosh.runner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.dx42.kibosh.rule.Rule;
+import org.dx42.kibosh.rule.TextRule;
+import org.dx42.kibosh.rule.Violation;
+import org.dx42.kibosh.test.AbstractKiboshTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ShardReportsTest extends AbstractKiboshTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final Rule rule = TextRule.builder().name("NoBad").illegalString("BAD").build();
+
+    @Test
+    void ShardedRuns_CheckedTogether() throws IOException {
+        Path sourceDir = Files.createDirectory(tempDir.resolve("src"));
+        for (int i = 0; i < 10; i++) {
+            Files.write(sourceDir.resolve("File" + i + ".java"), (i == 3 || i == 7 ? "BAD" : "ok").getBytes(UTF_8));
+        }
+        String reportDirectory = tempDir.resolve("reports").toString();
+
+        int errorCount = 0;
+        for (int shard = 0; shard < 3; shard++) {
+            KiboshRunner runner = KiboshRunner.builder()
+                    .baseDirectory(sourceDir.toString())
+                    .shardIndex(shard)
+                    .shardCount(3)
+                    .shardReportDirectory(reportDirectory)
+                    .build();
+            try {
+                runner.applyRules(rule);
+            } catch (KiboshViolationsException e) {
+                errorCount += e.getTotalCount();
+            }
+        }
+        assertThat(errorCount).isEqualTo(2);
+
+        assertThat(ShardReports.readViolations(reportDirectory, 3))
+                .extracting(Violation::getMessage)
+                .anySatisfy(message -> assertThat(message).contains("File3.java"))
+                .anySatisfy(message -> assertThat(message).contains("File7.java"));
+        assertThatExceptionOfType(KiboshViolationsException.class)
+                .isThrownBy(() -> ShardReports.checkForViolations(reportDirectory, 3))
+                .satisfies(e -> assertThat(e.getTotalCount()).isEqualTo(2));
+    }
+
+    @Test
+    void OnlyWarnings_Passes() throws IOException {
+        Files.createDirectory(tempDir.resolve("reports"));
+        Files.write(ShardReports.reportFile(tempDir.resolve("reports").toString(), 0, 1), "WARNING File.java: careful\n".getBytes(UTF_8));
+
+        ShardReports.checkForViolations(tempDir.resolve("reports").toString(), 1);
+        assertThat(ShardReports.readViolations(tempDir.resolve("reports").toString(), 1))
+                .extracting(Violation::getSeverity, Violation::getMessage)
+                .containsExactly(tuple(Violation.Severity.WARNING, "File.java: careful"));
+    }
+
+    @Test
+    void MultiLineMessages_RoundTrip() {
+        String reportDirectory = tempDir.resolve("reports").toString();
+        List<String> messages = list("line 1\nline 2", "cr\r and crlf\r\n", "back\\slash \\n", "trailing\\");
+        ReportFileViolationSink sink = new ReportFileViolationSink(ShardReports.reportFile(reportDirectory, 0, 1));
+        sink.start();
+        for (String message: messages) {
+            sink.add(Violation.builder().severity(Violation.Severity.WARNING).message(message).build());
+        }
+        sink.add(Violation.builder().message("error\r").build());
+        sink.finish();
+
+        assertThat(ShardReports.readViolations(reportDirectory, 1))
+                .extracting(Violation::getMessage)
+                .containsExactly("line 1\nline 2", "cr\r and crlf\r\n", "back\\slash \\n", "trailing\\", "error\r");
+        assertThatExceptionOfType(KiboshViolationsException.class)
+                .isThrownBy(() -> ShardReports.checkForViolations(reportDirectory, 1))
+                .satisfies(e -> assertThat(e.getTotalCount()).isEqualTo(1));
+    }
+
+    @Test
+    void MissingShardReport() {
+        assertThatIllegalStateException()
+                .isThrownBy(() -> ShardReports.checkForViolations(tempDir.toString(), 2))
+                .withMessageContaining("shard 0");
+    }
+
+}
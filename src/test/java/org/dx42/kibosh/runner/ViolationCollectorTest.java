@@ -0,0 +1,77 @@
+package org.dx42.kibosh.runner;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.dx42.kibosh.rule.Violation.Severity.*;
+import static org.mockito.Mockito.*;
+
+import org.dx42.kibosh.rule.Rule;
+import org.dx42.kibosh.rule.Violation;
+import org.dx42.kibosh.test.AbstractKiboshTest;
+import org.junit.jupiter.api.Test;
+
+class ViolationCollectorTest extends AbstractKiboshTest {
+
+    private final Rule rule1 = mock(Rule.class);
+    private final Rule rule2 = mock(Rule.class);
+
+    @Test
+    void NoLimits_KeepsAllViolations() {
+        ViolationCollector collector = new ViolationCollector();
+        Violation v1 = violation(rule1, ERROR);
+        Violation v2 = violation(rule2, WARNING);
+        collector.add(v1);
+        collector.add(v2);
+
+        assertThat(collector.getViolations()).containsExactly(v1, v2);
+        assertThat(collector.getViolations(ERROR)).containsExactly(v1);
+        assertThat(collector.getCount(ERROR)).isEqualTo(1);
+        assertThat(collector.getCount(WARNING)).isEqualTo(1);
+    }
+
+    @Test
+    void Limits_CountsViolationsBeyondLimits() {
+        ViolationCollector collector = new ViolationCollector(3, 2);
+        Violation v1 = violation(rule1, ERROR);
+        Violation v2 = violation(rule1, ERROR);
+        Violation v3 = violation(rule1, ERROR);
+        Violation v4 = violation(rule2, WARNING);
+        Violation v5 = violation(rule2, ERROR);
+        list(v1, v2, v3, v4, v5).forEach(collector::add);
+
+        assertThat(collector.getViolations()).containsExactly(v1, v2, v4, v5);
+        assertThat(collector.getCount(ERROR)).isEqualTo(4);
+        assertThat(collector.getCount(WARNING)).isEqualTo(1);
+        assertThat(collector.getCountsByRule()).containsEntry(rule1, 3).containsEntry(rule2, 2);
+    }
+
+    @Test
+    void Limits_WarningsDoNotCrowdOutErrors() {
+        ViolationCollector collector = new ViolationCollector(2, 2);
+        Violation w1 = violation(rule1, WARNING);
+        Violation w2 = violation(rule1, WARNING);
+        Violation w3 = violation(rule1, WARNING);
+        Violation e1 = violation(rule1, ERROR);
+        Violation e2 = violation(rule2, ERROR);
+        Violation e3 = violation(rule2, ERROR);
+        list(w1, w2, w3, e1, e2, e3).forEach(collector::add);
+
+        assertThat(collector.getViolations(ERROR)).containsExactly(e1, e2);
+        assertThat(collector.getViolations(WARNING)).containsExactly(w1, w2);
+        assertThat(collector.getCount(ERROR)).isEqualTo(3);
+        assertThat(collector.getCount(WARNING)).isEqualTo(3);
+    }
+
+    @Test
+    void start_ClearsViolations() {
+        ViolationCollector collector = new ViolationCollector();
+        collector.add(violation(rule1, ERROR));
+        collector.start();
+        assertThat(collector.getViolations()).isEmpty();
+        assertThat(collector.getCount(ERROR)).isZero();
+    }
+
+    private Violation violation(Rule rule, Violation.Severity severity) {
+        return Violation.builder().rule(rule).severity(severity).message("m").build();
+    }
+
+}